@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.api;
+
+import eu.ebrains.kg.service.caching.BroadcastInvalidationBus;
+import eu.ebrains.kg.service.caching.Invalidation;
+import eu.ebrains.kg.service.configuration.InternalConnector;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Receives the cache invalidations broadcast by the other instances of the editor - it is not part of the public API
+ * and is therefore only served on the {@link InternalConnector} (it doesn't exist for requests arriving on the public
+ * port).
+ */
+@Hidden
+@RequestMapping(BroadcastInvalidationBus.PATH)
+@RestController
+@ConditionalOnProperty(name = "kg.invalidation.transport", havingValue = "broadcast")
+public class CacheInvalidation {
+
+    private final BroadcastInvalidationBus invalidationBus;
+    private final InternalConnector internalConnector;
+
+    public CacheInvalidation(BroadcastInvalidationBus invalidationBus, InternalConnector internalConnector) {
+        this.invalidationBus = invalidationBus;
+        this.internalConnector = internalConnector;
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> invalidate(HttpServletRequest request, @RequestHeader(value = BroadcastInvalidationBus.SECRET_HEADER, required = false) String secret, @RequestBody Invalidation invalidation) {
+        if (!internalConnector.isInternal(request.getLocalPort())) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(invalidationBus.receive(secret, invalidation) ? HttpStatus.NO_CONTENT : HttpStatus.FORBIDDEN).build();
+    }
+}
@@ -23,14 +23,23 @@
 
 package eu.ebrains.kg.service.api;
 
+import eu.ebrains.kg.service.caching.ETags;
+import eu.ebrains.kg.service.caching.InstanceVersions;
 import eu.ebrains.kg.service.constants.Constants;
 import eu.ebrains.kg.service.controllers.IdController;
 import eu.ebrains.kg.service.controllers.InstanceController;
+import eu.ebrains.kg.service.controllers.IriController;
+import eu.ebrains.kg.service.controllers.NormalizationController;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.ResultWithOriginalMap;
+import eu.ebrains.kg.service.models.commons.Permissions;
 import eu.ebrains.kg.service.models.commons.UserSummary;
 import eu.ebrains.kg.service.models.instance.*;
 import eu.ebrains.kg.service.services.InstanceClient;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -44,18 +53,45 @@ public class Instances {
     private final InstanceClient instanceClient;
     private final InstanceController instanceController;
     private final IdController idController;
+    private final InstanceVersions instanceVersions;
+    private final NormalizationController normalizationController;
+    private final IriController iriController;
 
-    public Instances(InstanceClient instanceClient, InstanceController instanceController, IdController idController) {
+    public Instances(InstanceClient instanceClient, InstanceController instanceController, IdController idController, InstanceVersions instanceVersions, NormalizationController normalizationController, IriController iriController) {
         this.instanceClient = instanceClient;
         this.instanceController = instanceController;
         this.idController = idController;
+        this.instanceVersions = instanceVersions;
+        this.normalizationController = normalizationController;
+        this.iriController = iriController;
     }
 
     @GetMapping("/instances/{id}")
-    public KGCoreResult<InstanceFull> getInstance(@PathVariable("id") String id) {
+    public ResponseEntity<KGCoreResult<InstanceFull>> getInstance(@PathVariable("id") String id, @RequestHeader HttpHeaders requestHeaders) {
+        String ifNoneMatch = requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH);
+        String currentEtag = currentEtag(id, requestHeaders);
+        if (currentEtag != null && ETags.matches(ifNoneMatch, currentEtag)) {
+            // The client knows this version already - so there is no need to fetch and enrich the instance
+            return conditionalResponse(HttpStatus.NOT_MODIFIED, currentEtag).build();
+        }
         ResultWithOriginalMap<InstanceFull> instanceWithMap = instanceClient.getInstance(id);
+        String etag = instanceWithMap != null ? instanceVersions.etagOf(instanceWithMap.getOriginalMap(), requestHeaders) : null;
         InstanceFull instanceFull = instanceController.enrichInstance(instanceWithMap);
-        return new KGCoreResult<InstanceFull>().setData(instanceFull);
+        return conditionalResponse(HttpStatus.OK, etag).body(new KGCoreResult<InstanceFull>().setData(instanceFull));
+    }
+
+    /**
+     * @return the current ETag of the instance (from its metadata only) if the client has a version to revalidate
+     */
+    private String currentEtag(String id, HttpHeaders requestHeaders) {
+        return requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH) != null ? instanceVersions.etagOf(instanceClient.getInstanceMetadata(id), requestHeaders) : null;
+    }
+
+    private static ResponseEntity.BodyBuilder conditionalResponse(HttpStatus status, String etag) {
+        // The ETag depends on the representation - and a 304 doesn't pass the IRI compaction which would declare it
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT, Constants.IRI_COMPACTION_HEADER);
+        return etag != null ? builder.eTag(etag) : builder;
     }
 
 
@@ -63,7 +99,7 @@ public class Instances {
     public KGCoreResult<InstanceFull> createInstance(@PathVariable("id") String id,
                                                      @RequestParam("space") String space,
                                                      @RequestBody Map<String, Object> payload) {
-        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(payload);
+        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(iriController.expand(payload));
         ResultWithOriginalMap<InstanceFull> instanceWithMap = instanceClient.postInstance(id, space, normalizedPayload);
         InstanceFull instanceFull = instanceController.enrichInstance(instanceWithMap);
         return new KGCoreResult<InstanceFull>().setData(instanceFull);
@@ -73,7 +109,7 @@ public class Instances {
     @PostMapping("/instances")
     public KGCoreResult<InstanceFull> createInstanceWithoutId(@RequestParam("space") String space,
                                                      @RequestBody Map<String, Object> payload) {
-        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(payload);
+        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(iriController.expand(payload));
         ResultWithOriginalMap<InstanceFull> instanceWithMap = instanceClient.postInstance(space, normalizedPayload);
         InstanceFull instanceFull = instanceController.enrichInstance(instanceWithMap);
         return new KGCoreResult<InstanceFull>().setData(instanceFull);
@@ -82,7 +118,7 @@ public class Instances {
     @PatchMapping("/instances/{id}")
     public KGCoreResult<InstanceFull> updateInstance(@PathVariable("id") String id,
                                                      @RequestBody Map<String, Object> payload) {
-        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(payload);
+        Map<?, ?> normalizedPayload = idController.fullyQualifyAtId(iriController.expand(payload));
         ResultWithOriginalMap<InstanceFull> instanceWithMap = instanceClient.patchInstance(id, normalizedPayload);
         InstanceFull instanceFull = instanceController.enrichInstance(instanceWithMap);
         return new KGCoreResult<InstanceFull>().setData(instanceFull);
@@ -94,8 +130,16 @@ public class Instances {
     }
 
     @GetMapping("/instances/{id}/raw")
-    public Map<String, Object> getRawInstance(@PathVariable("id") String id) {
-        return instanceClient.getRawInstance(id);
+    public ResponseEntity<Map<String, Object>> getRawInstance(@PathVariable("id") String id, @RequestHeader HttpHeaders requestHeaders) {
+        String ifNoneMatch = requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH);
+        String currentEtag = currentEtag(id, requestHeaders);
+        if (currentEtag != null && ETags.matches(ifNoneMatch, currentEtag)) {
+            return conditionalResponse(HttpStatus.NOT_MODIFIED, currentEtag).build();
+        }
+        Map<String, Object> rawInstance = instanceClient.getRawInstance(id);
+        // The permissions of the raw instance are moved out of its document
+        String etag = rawInstance != null && rawInstance.get("data") instanceof Map<?, ?> data ? instanceVersions.etagOf(data, rawInstance.get("permissions") instanceof Permissions permissions ? permissions : null, requestHeaders) : null;
+        return conditionalResponse(HttpStatus.OK, etag).body(rawInstance);
     }
 
     @GetMapping("/instances/{id}/scope")
@@ -123,6 +167,13 @@ public class Instances {
         return new KGCoreResult<Map<String, InstanceFull>>().setData(enrichedInstances);
     }
 
+    @PostMapping(value = "/instancesBulk/list", params = "normalized=true")
+    public KGCoreResult<NormalizedInstances> getNormalizedInstancesList(@RequestParam(value = "stage", defaultValue = "IN_PROGRESS", required = false) String stage,
+                                                                        @RequestBody List<String> ids) {
+        Map<String, InstanceFull> enrichedInstances = getInstancesList(stage, ids).getData();
+        return new KGCoreResult<NormalizedInstances>().setData(normalizationController.normalize(enrichedInstances));
+    }
+
     @PostMapping("/instancesBulk/summary")
     public KGCoreResult<Map<String, InstanceSummary>> getInstancesSummary(@RequestParam(value = "stage", defaultValue = "IN_PROGRESS", required = false) String stage,
                                     @RequestBody List<String> ids) {
@@ -131,6 +182,13 @@ public class Instances {
         return new KGCoreResult<Map<String, InstanceSummary>>().setData(enrichedInstances);
     }
 
+    @PostMapping(value = "/instancesBulk/summary", params = "normalized=true")
+    public KGCoreResult<NormalizedInstances> getNormalizedInstancesSummary(@RequestParam(value = "stage", defaultValue = "IN_PROGRESS", required = false) String stage,
+                                                                           @RequestBody List<String> ids) {
+        Map<String, InstanceSummary> enrichedInstances = getInstancesSummary(stage, ids).getData();
+        return new KGCoreResult<NormalizedInstances>().setData(normalizationController.normalize(enrichedInstances));
+    }
+
     @PostMapping("/instancesBulk/label")
     public KGCoreResult<Map<String, InstanceLabel>> getInstancesLabel(@RequestParam(value = "stage", defaultValue = "IN_PROGRESS", required = false) String stage,
                                   @RequestBody List<String> ids) {
@@ -184,13 +242,11 @@ public class Instances {
 
     @DeleteMapping("/instances/{id}/users/{userId}/invite")
     public KGCoreResult<List<UserSummary>> deleteUserinvitation(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        instanceClient.deleteInvitedUser(id, userId);
-        return instanceClient.getInvitedUsers(id);
+        return instanceClient.deleteInvitedUser(id, userId);
     }
 
     @PutMapping("/instances/{id}/users/{userId}/invite")
     public KGCoreResult<List<UserSummary>> putUserinvitation(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        instanceClient.addInvitation(id, userId);
-        return instanceClient.getInvitedUsers(id);
+        return instanceClient.addInvitation(id, userId);
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.service.constants.Constants;
+import eu.ebrains.kg.service.controllers.IriController;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Compacts the IRIs of the JSON (and Smile) responses if the client asks for it with the {@link Constants#IRI_COMPACTION_HEADER}.
+ * Only the responses which can be compacted vary by the header.
+ */
+@ControllerAdvice(annotations = RestController.class)
+public class IriCompactionAdvice implements ResponseBodyAdvice<Object> {
+
+    private final IriController iriController;
+    private final ObjectMapper objectMapper;
+
+    public IriCompactionAdvice(IriController iriController, ObjectMapper objectMapper) {
+        this.iriController = iriController;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
+        if (!IriController.isCompactable(body)) {
+            return body;
+        }
+        if (!response.getHeaders().getVary().contains(Constants.IRI_COMPACTION_HEADER)) {
+            // Conditional responses declare it themselves already
+            response.getHeaders().add(HttpHeaders.VARY, Constants.IRI_COMPACTION_HEADER);
+        }
+        if (!Boolean.parseBoolean(request.getHeaders().getFirst(Constants.IRI_COMPACTION_HEADER))) {
+            return body;
+        }
+        return iriController.compact(objectMapper.valueToTree(body));
+    }
+}
@@ -23,6 +23,9 @@
 
 package eu.ebrains.kg.service.api;
 
+import eu.ebrains.kg.service.resilience.DeadlineExceededException;
+import eu.ebrains.kg.service.resilience.LimitExceededException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -59,6 +62,16 @@ public class RestControllerAdvice {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
+    @ExceptionHandler({LimitExceededException.class})
+    protected ResponseEntity<Object> limitExceeded(RuntimeException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    @ExceptionHandler({DeadlineExceededException.class})
+    protected ResponseEntity<Object> deadlineExceeded(RuntimeException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+    }
+
     @ExceptionHandler({IllegalArgumentException.class})
     protected ResponseEntity<Object> illegalArgument(RuntimeException ex, WebRequest request) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
@@ -23,71 +23,34 @@
 
 package eu.ebrains.kg.service.api;
 
+import eu.ebrains.kg.service.caching.SerializedResponse;
 import eu.ebrains.kg.service.constants.Constants;
-import eu.ebrains.kg.service.models.KGCoreResult;
-import eu.ebrains.kg.service.services.AuthClient;
+import eu.ebrains.kg.service.controllers.SettingsController;
 import io.swagger.v3.oas.annotations.Operation;
-import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
-import java.util.Map;
-
 @RequestMapping(Constants.ROOT_PATH_OF_API + "/settings")
 @RestController
 public class Settings {
 
-    private final AuthClient authClient;
+    private final SettingsController settingsController;
 
-    public Settings(AuthClient authClient) {
-        this.authClient = authClient;
+    public Settings(SettingsController settingsController) {
+        this.settingsController = settingsController;
     }
 
     @Operation(summary = "Get settings")
     @GetMapping
-    public ResponseEntity getSettings(
-            @Value("${eu.ebrains.kg.commit}") String commit,
-            @Value("${keycloak.realm}") String keycloakRealm ,
-            @Value("${keycloak.resource}") String keycloakClientId,
-            @Value("${sentry.dsn.ui}") String sentryDsnUi,
-            @Value("${sentry.environment}") String sentryEnvironment,
-            @Value("${matomo.url}") String matomoUrl,
-            @Value("${matomo.siteId}") String matomoSiteId
-    ) {
-        String authEndpoint = authClient.getEndpoint();
-        if (StringUtils.isNotBlank(authEndpoint)) {
-            KGCoreResult.Single result = new KGCoreResult.Single();
-            Map<String, Object> settings = new HashMap<>();
-            settings.put("keycloak", Map.of(
-                    "realm", keycloakRealm,
-                    "url", authEndpoint,
-                    "clientId", keycloakClientId
-            ));
-            if(StringUtils.isNotBlank(commit) && !commit.equals("\"\"")) {
-                settings.put("commit", commit);
-
-                // Only provide sentry when commit is available, ie on deployed env
-                if (StringUtils.isNotBlank(sentryDsnUi)) {
-                    settings.put("sentry", Map.of(
-                            "dsn", sentryDsnUi,
-                            "release", commit,
-                            "environment", sentryEnvironment
-                    ));
-                }
-            }
-            if (StringUtils.isNotBlank(matomoUrl) && StringUtils.isNotBlank(matomoSiteId)) {
-                settings.put("matomo", Map.of(
-                        "url", matomoUrl,
-                        "siteId", matomoSiteId
-                ));
-            }
-            result.setData(settings);
-            return ResponseEntity.ok(result);
+    public ResponseEntity<byte[]> getSettings(@RequestHeader HttpHeaders headers) {
+        SerializedResponse settings = settingsController.getSettings();
+        if (settings != null) {
+            return settings.toResponseEntity(headers);
         }
         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
     }
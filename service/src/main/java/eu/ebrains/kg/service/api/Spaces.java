@@ -25,12 +25,18 @@ package eu.ebrains.kg.service.api;
 
 import eu.ebrains.kg.service.constants.Constants;
 import eu.ebrains.kg.service.controllers.SpaceController;
+import eu.ebrains.kg.service.models.Error;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.type.StructureOfType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RequestMapping(Constants.ROOT_PATH_OF_API + "/spaces")
 @RestController
@@ -43,16 +49,28 @@ public class Spaces {
     }
 
     @GetMapping("/{space}/types")
-    public KGCoreResult<List<StructureOfType>> getSpaceTypes(@PathVariable("space") String space) {
-        List<StructureOfType> spaceTypes = spaceController.getTypes(space);
-        return new KGCoreResult<List<StructureOfType>>().setData(spaceTypes);
+    public ResponseEntity<byte[]> getSpaceTypes(@PathVariable("space") String space, @RequestHeader HttpHeaders headers) {
+        return spaceController.getSerializedTypes(space).toResponseEntity(headers);
     }
 
     @PostMapping("/{space}/types")
     public KGCoreResult<List<StructureOfType>> addTypesToSpace(@PathVariable("space") String space, @RequestBody(required = true) List<String> types) {
-        spaceController.addTypesToSpace(space, types);
-        List<StructureOfType> relatedTypes = spaceController.getTypesByName(types, space);
-        return new KGCoreResult<List<StructureOfType>>().setData(relatedTypes);
+        SpaceController.TypesAssignment assignment = spaceController.addTypesToSpace(space, types, true);
+        KGCoreResult<List<StructureOfType>> result = new KGCoreResult<List<StructureOfType>>().setData(assignment.getStructures());
+        if (!assignment.getFailedTypes().isEmpty()) {
+            // Some types have been assigned - we therefore return them and report the failing ones
+            String message = String.format("Failed to assign the types %s", assignment.getFailedTypes().entrySet().stream()
+                    .map(e -> String.format("%s (%s)", e.getKey(), e.getValue().getMessage()))
+                    .collect(Collectors.joining(", ")));
+            Error error = new Error();
+            error.setCode(assignment.getFailedTypes().values().stream()
+                    .filter(WebClientResponseException.class::isInstance)
+                    .map(e -> ((WebClientResponseException) e).getRawStatusCode())
+                    .findFirst().orElse(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+            error.setMessage(message);
+            result.setError(error).setMessage(message);
+        }
+        return result;
     }
 
     @DeleteMapping("/{space}/types")
@@ -25,6 +25,7 @@ package eu.ebrains.kg.service.api;
 
 import eu.ebrains.kg.service.constants.Constants;
 import eu.ebrains.kg.service.controllers.IdController;
+import eu.ebrains.kg.service.controllers.UserController;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.commons.UserSummary;
 import eu.ebrains.kg.service.models.user.UserProfile;
@@ -45,11 +46,13 @@ import java.util.stream.Collectors;
 public class Users {
 
     private final IdController idController;
+    private final UserController userController;
     private final UserClient userClient;
     private final SpaceClient spaceClient;
 
-    public Users(IdController idController, UserClient userClient, SpaceClient spaceClient) {
+    public Users(IdController idController, UserController userController, UserClient userClient, SpaceClient spaceClient) {
         this.idController = idController;
+        this.userController = userController;
         this.userClient = userClient;
         this.spaceClient = spaceClient;
     }
@@ -78,7 +81,7 @@ public class Users {
 
     @GetMapping("/search")
     public KGCoreResult<List<UserSummary>> getUsers(@RequestParam(value = "search", required = false) String search) {
-        return new KGCoreResult<List<UserSummary>>().setData(userClient.getUsers(search));
+        return new KGCoreResult<List<UserSummary>>().setData(userController.searchUsers(search));
     }
 
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import eu.ebrains.kg.service.configuration.InternalConnector;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Delivers the invalidations to this instance and sends them to all other instances of the editor. The peers are
+ * resolved by their host names on every publication - with a headless service, a single name resolves to all
+ * replicas. The invalidations are sent to the internal port of the peers (see {@link InternalConnector}) in plain HTTP
+ * with the shared secret - so this port must only be reachable within the (trusted) network of the instances. A peer
+ * which can not be reached within the configured timeout (and retries) misses the invalidation: its caches are then
+ * only refreshed once they expire.
+ */
+@Component
+@ConditionalOnProperty(name = "kg.invalidation.transport", havingValue = "broadcast")
+public class BroadcastInvalidationBus implements InvalidationBus {
+
+    public static final String PATH = "/internal/cacheInvalidation";
+    public static final String SECRET_HEADER = "X-Invalidation-Secret";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final InProcessInvalidationBus local = new InProcessInvalidationBus();
+    private final WebClient webClient = WebClient.create();
+    private final List<String> peers;
+    private final int port;
+    private final byte[] secret;
+    private final Duration timeout;
+    private final int retries;
+
+    public BroadcastInvalidationBus(@Value("${kg.invalidation.peers}") List<String> peers, InternalConnector internalConnector, @Value("${kg.invalidation.secret}") String secret, @Value("${kg.invalidation.timeout:2s}") Duration timeout, @Value("${kg.invalidation.retries:2}") int retries) {
+        if (StringUtils.isBlank(secret)) {
+            throw new IllegalStateException("The broadcast of cache invalidations requires \"kg.invalidation.secret\"");
+        }
+        this.peers = peers.stream().filter(StringUtils::isNotBlank).map(String::trim).toList();
+        this.port = internalConnector.getPort();
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.timeout = timeout;
+        this.retries = retries;
+    }
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        local.publish(invalidation);
+        Flux.fromIterable(resolvePeers()).flatMap(peer -> webClient.post().uri(String.format("http://%s:%d%s", peer, port, PATH))
+                        .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8))
+                        .body(BodyInserters.fromValue(invalidation))
+                        .retrieve()
+                        .bodyToMono(Void.class)
+                        .timeout(timeout)
+                        .retryWhen(Retry.backoff(retries, Duration.ofMillis(100)))
+                        .onErrorResume(e -> {
+                            logger.warn("Was not able to send the invalidation {} to {}: {}", invalidation, peer, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    private List<String> resolvePeers() {
+        return peers.stream().flatMap(host -> {
+            try {
+                return Arrays.stream(InetAddress.getAllByName(host));
+            } catch (UnknownHostException e) {
+                logger.warn("Was not able to resolve the peer {}", host);
+                return Stream.empty();
+            }
+        }).filter(address -> !isLocal(address)).map(InetAddress::getHostAddress).distinct()
+                .map(address -> address.contains(":") ? String.format("[%s]", address) : address).toList();
+    }
+
+    private static boolean isLocal(InetAddress address) {
+        try {
+            return address.isLoopbackAddress() || address.isAnyLocalAddress() || NetworkInterface.getByInetAddress(address) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies an invalidation received from another instance (if it is authorized by the shared secret).
+     *
+     * @return whether the invalidation has been accepted
+     */
+    public boolean receive(String providedSecret, Invalidation invalidation) {
+        if (providedSecret == null || !MessageDigest.isEqual(secret, providedSecret.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        local.publish(invalidation);
+        return true;
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> subscriber) {
+        local.subscribe(subscriber);
+    }
+}
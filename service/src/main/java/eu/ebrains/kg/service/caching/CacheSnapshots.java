@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Persists the schema related caches to a local snapshot (if "kg.cache.snapshotDirectory" is set) so a restarted
+ * instance starts warm. The snapshot is only restored if it is younger than "kg.cache.snapshotMaxAge". The types keep
+ * the time they have been loaded at and are therefore refreshed in the background once they are stale. The serialized
+ * types of spaces are not persisted: their schema version is only known to the running instance, so a schema change
+ * applied while the instance was down could not be detected.
+ */
+@Component
+public class CacheSnapshots {
+
+    private static final String SNAPSHOT_FILE = "schema-caches.snapshot";
+    private static final List<String> TYPE_CACHES = List.of("allTypes", "typeStructure");
+    private static final ObjectInputFilter SNAPSHOT_FILTER = ObjectInputFilter.Config.createFilter("eu.ebrains.kg.service.**;java.**;org.springframework.cache.interceptor.SimpleKey;!*");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final CacheManager cacheManager;
+    private final Path snapshot;
+    private final Duration maxAge;
+
+    public CacheSnapshots(CacheManager cacheManager, @Value("${kg.cache.snapshotDirectory:}") String snapshotDirectory, @Value("${kg.cache.snapshotMaxAge:1h}") Duration maxAge) {
+        this.cacheManager = cacheManager;
+        this.snapshot = snapshotDirectory.isBlank() ? null : Path.of(snapshotDirectory, SNAPSHOT_FILE);
+        this.maxAge = maxAge;
+    }
+
+    private static class Snapshot implements Serializable {
+        private final long createdAt = System.currentTimeMillis();
+        private final Map<String, Map<Object, Object>> typeCaches = new HashMap<>();
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (snapshot == null || !Files.exists(snapshot)) {
+            return;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            in.setObjectInputFilter(SNAPSHOT_FILTER);
+            Snapshot restored = (Snapshot) in.readObject();
+            if (System.currentTimeMillis() - restored.createdAt > maxAge.toMillis()) {
+                logger.info("Ignoring the cache snapshot since it is older than {}", maxAge);
+                return;
+            }
+            restored.typeCaches.forEach((name, entries) -> {
+                Cache cache = cacheManager.getCache(name);
+                if (cache != null) {
+                    entries.forEach(cache::put);
+                }
+            });
+            logger.info("Restored the schema caches from {}", snapshot);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // e.g. a snapshot of an incompatible version - we just start cold
+            logger.warn("Was not able to restore the cache snapshot: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(initialDelayString = "${kg.cache.snapshotInterval:600000}", fixedDelayString = "${kg.cache.snapshotInterval:600000}")
+    public void save() {
+        if (snapshot == null) {
+            return;
+        }
+        Snapshot current = new Snapshot();
+        TYPE_CACHES.forEach(name -> {
+            Map<Object, Object> entries = new HashMap<>();
+            forEachEntry(name, entries::put);
+            current.typeCaches.put(name, entries);
+        });
+        try {
+            Files.createDirectories(snapshot.getParent());
+            Path temporary = Files.createTempFile(snapshot.getParent(), SNAPSHOT_FILE, ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeObject(current);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Was not able to write the cache snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void forEachEntry(String cacheName, BiConsumer<Object, Object> consumer) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && cache.getNativeCache() instanceof javax.cache.Cache<?, ?> nativeCache) {
+            nativeCache.forEach(entry -> consumer.accept(entry.getKey(), entry.getValue()));
+        }
+    }
+}
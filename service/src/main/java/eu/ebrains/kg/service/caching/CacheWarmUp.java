@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import eu.ebrains.kg.service.controllers.SettingsController;
+import eu.ebrains.kg.service.models.type.StructureOfType;
+import eu.ebrains.kg.service.services.SpaceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Warms up the caches at startup with the service account: the settings (and therefore the authentication endpoint),
+ * the assignable types and the type structures of the type closures (nested, target and incoming link source types) of
+ * the configured spaces. Only the caches which don't depend on the permissions of the user are warmed up - the types of
+ * the spaces themselves and their serialized responses are left to the first reader. Since the
+ * runners are executed before the application reports to accept traffic, the readiness probe only succeeds once the
+ * warm-up is done (or has timed out). Failures are reported in the health details but never prevent the startup.
+ */
+@Component
+public class CacheWarmUp implements ApplicationRunner, HealthIndicator {
+
+    private static final String OK = "ok";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final SettingsController settingsController;
+    private final SpaceClient spaceClient;
+    private final boolean enabled;
+    private final List<String> spaces;
+    private final int concurrency;
+    private final Duration timeout;
+
+    private final Map<String, String> outcomes = new ConcurrentHashMap<>();
+    private volatile String state = "pending";
+    private volatile long duration;
+
+    public CacheWarmUp(SettingsController settingsController, SpaceClient spaceClient, @Value("${kg.warmup.enabled:true}") boolean enabled, @Value("${kg.warmup.spaces:}") List<String> spaces, @Value("${kg.warmup.concurrency:4}") int concurrency, @Value("${kg.warmup.timeout:2m}") Duration timeout) {
+        this.settingsController = settingsController;
+        this.spaceClient = spaceClient;
+        this.enabled = enabled;
+        this.spaces = spaces.stream().filter(s -> !s.isBlank()).map(String::trim).distinct().toList();
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            state = "disabled";
+            return;
+        }
+        state = "running";
+        long start = System.currentTimeMillis();
+        List<Mono<Void>> steps = new ArrayList<>();
+        steps.add(step("settings", () -> settingsController.getSettings() != null ? OK : "authentication endpoint not available"));
+        steps.add(step("assignableTypes", () -> {
+            List<StructureOfType> types = spaceClient.preloadAllAssignableTypes().block();
+            return String.format("%d types", types != null ? types.size() : 0);
+        }));
+        spaces.forEach(space -> steps.add(step("space:" + space, () -> {
+            Integer structures = spaceClient.preloadTypeClosure(space).block();
+            return String.format("%d type structures", structures != null ? structures : 0);
+        })));
+        try {
+            Flux.merge(Flux.fromIterable(steps), concurrency).then().block(timeout);
+            state = "done";
+        } catch (IllegalStateException e) {
+            // The pending steps are cancelled - the caches are populated on demand instead
+            state = "timed out";
+        }
+        duration = System.currentTimeMillis() - start;
+        logger.info("Cache warm-up {} after {} ms: {}", state, duration, outcomes);
+    }
+
+    private Mono<Void> step(String name, Callable<String> warmUp) {
+        return Mono.fromCallable(warmUp)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(outcome -> outcomes.put(name, outcome))
+                .onErrorResume(e -> {
+                    // The details of the failure (e.g. the URLs of the upstream services) are only logged
+                    logger.warn("Cache warm-up step {} failed: {}", name, e.getMessage());
+                    outcomes.put(name, "failed");
+                    return Mono.empty();
+                }).then();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = state.equals("running") || state.equals("pending") ? Health.unknown() : Health.up();
+        return builder.withDetail("state", state).withDetail("durationMs", duration).withDetail("steps", outcomes).build();
+    }
+}
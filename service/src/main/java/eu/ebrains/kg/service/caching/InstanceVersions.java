@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.service.constants.Constants;
+import eu.ebrains.kg.service.constants.EditorConstants;
+import eu.ebrains.kg.service.models.KGCoreResult;
+import eu.ebrains.kg.service.models.commons.Permissions;
+import eu.ebrains.kg.service.models.type.StructureOfType;
+import eu.ebrains.kg.service.services.SpaceClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Provides the validators of instance documents. The ETag of an instance is derived from its revision in the KG (which
+ * changes with every modification, no matter by whom), the structures of its types (which drive the enrichment of the
+ * document) and the permissions of the user on it. It can therefore be checked with the metadata of the instance and
+ * the (cached) type structures only - the document doesn't need to be fetched (nor enriched) to revalidate it. Changes
+ * which don't touch the instance itself (e.g. new incoming links) don't change its revision and are therefore only
+ * picked up with the next unconditional request.
+ *
+ * Since the same document is served as JSON or Smile and with full or compacted IRIs, the ETag carries a suffix per
+ * representation. Compressed responses don't need one: the container weakens the ETag of the responses it compresses.
+ */
+@Component
+public class InstanceVersions {
+
+    private static final String TYPE = "@type";
+    private static final String REVISION = EditorConstants.CORE_META + "revision";
+    private static final String SMILE = "smile";
+    private static final String COMPACT = "compact";
+
+    private final ObjectMapper objectMapper;
+    private final SpaceClient spaceClient;
+
+    public InstanceVersions(ObjectMapper objectMapper, SpaceClient spaceClient) {
+        this.objectMapper = objectMapper;
+        this.spaceClient = spaceClient;
+    }
+
+    /**
+     * @return the quoted ETag of the given document (or metadata) of the instance - containing its permissions - in the
+     * representation requested with the given headers or null if it has no revision
+     */
+    public String etagOf(Map<?, ?> document, HttpHeaders requestHeaders) {
+        if (document == null) {
+            return null;
+        }
+        Object permissions = document.get(EditorConstants.VOCAB_PERMISSIONS);
+        return etagOf(document, permissions instanceof List<?> permissionList ? Permissions.fromPermissionList(permissionList.stream().map(Object::toString).toList()) : null, requestHeaders);
+    }
+
+    /**
+     * @return the quoted ETag of the given document of the instance with the given permissions in the representation
+     * requested with the given headers or null if it has no revision
+     */
+    public String etagOf(Map<?, ?> document, Permissions permissions, HttpHeaders requestHeaders) {
+        Object revision = document != null ? document.get(REVISION) : null;
+        if (revision == null) {
+            // Without a validator, the response is simply not revalidated
+            return null;
+        }
+        try {
+            String validator = String.format("%s:%s:%s", revision, typeStructureFingerprint(document.get(TYPE)), objectMapper.writeValueAsString(permissions));
+            String representation = String.format("%s%s",
+                    SerializedResponse.acceptsSmile(requestHeaders) ? "-" + SMILE : "",
+                    Boolean.parseBoolean(requestHeaders.getFirst(Constants.IRI_COMPACTION_HEADER)) ? "-" + COMPACT : "");
+            return ETags.quote(DigestUtils.md5DigestAsHex(validator.getBytes(StandardCharsets.UTF_8)) + representation);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The structures are resolved the same way as for the enrichment (so they are usually served from the shared cache)
+     * and their content is hashed - which keeps the fingerprint stable across restarts and replicas. Types which don't
+     * exist are left out.
+     */
+    private String typeStructureFingerprint(Object types) throws JsonProcessingException {
+        if (!(types instanceof List<?> typeList) || typeList.isEmpty()) {
+            return "";
+        }
+        Map<String, KGCoreResult<StructureOfType>> structures = spaceClient.getTypesByName(typeList.stream().map(Object::toString).toList(), true);
+        Map<String, StructureOfType> sortedStructures = new TreeMap<>();
+        if (structures != null) {
+            structures.forEach((name, structure) -> {
+                if (structure != null && structure.getData() != null) {
+                    sortedStructures.put(name, structure.getData());
+                }
+            });
+        }
+        return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(sortedStructures));
+    }
+}
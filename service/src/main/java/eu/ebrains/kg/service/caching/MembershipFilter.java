@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import java.util.BitSet;
+
+/**
+ * A compact (bloom) filter telling whether a key might have been added within the retention time - it never misses
+ * a key added within this time but might report keys which have never been added. Keys are dropped by generation: a
+ * key is retained for at least the retention time and at most twice the retention time.
+ */
+class MembershipFilter {
+
+    private static final int HASHES = 3;
+
+    private final int bits;
+    private final long retention;
+    private BitSet current;
+    private BitSet previous;
+    private long generationStart;
+
+    MembershipFilter(int bits, long retentionInMs) {
+        this.bits = bits;
+        this.retention = retentionInMs;
+        this.current = new BitSet(bits);
+        this.previous = new BitSet(bits);
+        this.generationStart = System.currentTimeMillis();
+    }
+
+    synchronized void add(String key) {
+        rotateIfNecessary();
+        int hash = key.hashCode();
+        int secondHash = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            current.set(index(hash, secondHash, i));
+        }
+    }
+
+    synchronized boolean mightContain(String key) {
+        rotateIfNecessary();
+        int hash = key.hashCode();
+        int secondHash = mix(hash);
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 0; i < HASHES; i++) {
+            int index = index(hash, secondHash, i);
+            inCurrent &= current.get(index);
+            inPrevious &= previous.get(index);
+        }
+        return inCurrent || inPrevious;
+    }
+
+    private void rotateIfNecessary() {
+        long now = System.currentTimeMillis();
+        if (now - generationStart >= retention) {
+            // If a whole generation has passed without any access, the previous one is outdated as well
+            previous = now - generationStart >= 2 * retention ? new BitSet(bits) : current;
+            current = new BitSet(bits);
+            generationStart = now;
+        }
+    }
+
+    private int index(int hash, int secondHash, int i) {
+        return Math.floorMod(hash + i * secondHash, bits);
+    }
+
+    private static int mix(int hash) {
+        // The finalizer of murmur3 to derive an independent second hash
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import eu.ebrains.kg.service.configuration.OauthClient;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers (for a short time) the types and spaces which are known not to exist - so they don't cost an upstream
+ * lookup every time they are referenced. The membership filter answers most lookups of existing entries without
+ * touching the cache. Since the existence of a space might depend on the permissions, missing spaces are remembered
+ * per user - and only for the current schema version of the space (they are therefore forgotten once the space is
+ * initialized by any instance of the editor).
+ */
+@Component
+public class MissingEntries {
+
+    private static final String MISSING_CACHE = "missing";
+    private static final long DEFAULT_RETENTION = TimeUnit.MINUTES.toMillis(5);
+
+    private final Cache missingCache;
+    private final MembershipFilter filter;
+    private final SchemaVersion schemaVersion;
+    private final HttpServletRequest request;
+
+    public MissingEntries(CacheManager cacheManager, SchemaVersion schemaVersion, HttpServletRequest request, @Value("${kg.cache.missing.filterBits:65536}") int filterBits) {
+        this.missingCache = cacheManager.getCache(MISSING_CACHE);
+        this.schemaVersion = schemaVersion;
+        this.request = request;
+        this.filter = new MembershipFilter(filterBits, retentionOf(missingCache));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long retentionOf(Cache cache) {
+        // The filter needs to retain the keys at least as long as the cache does
+        if (cache.getNativeCache() instanceof javax.cache.Cache<?, ?> nativeCache) {
+            Eh107Configuration<Object, Object> eh107Configuration = nativeCache.getConfiguration(Eh107Configuration.class);
+            CacheRuntimeConfiguration<Object, Object> configuration = eh107Configuration.unwrap(CacheRuntimeConfiguration.class);
+            Duration ttl = configuration.getExpiryPolicy().getExpiryForCreation(MISSING_CACHE, Boolean.TRUE);
+            if (ttl != null && !ttl.equals(ExpiryPolicy.INFINITE) && !ttl.isZero()) {
+                return ttl.toMillis();
+            }
+        }
+        return DEFAULT_RETENTION;
+    }
+
+    public boolean isMissingType(String type) {
+        return isMissing(typeKey(type));
+    }
+
+    public void markMissingType(String type) {
+        markMissing(typeKey(type));
+    }
+
+    public boolean isMissingSpace(String space) {
+        String key = spaceKey(space);
+        return key != null && isMissing(key);
+    }
+
+    public void markMissingSpace(String space) {
+        String key = spaceKey(space);
+        if (key != null) {
+            markMissing(key);
+        }
+    }
+
+    private boolean isMissing(String key) {
+        return filter.mightContain(key) && missingCache.get(key) != null;
+    }
+
+    private void markMissing(String key) {
+        missingCache.put(key, Boolean.TRUE);
+        filter.add(key);
+    }
+
+    private static String typeKey(String type) {
+        return String.format("type:%s", type);
+    }
+
+    private String spaceKey(String space) {
+        String authorization = request.getHeader(OauthClient.AUTHORIZATION_KEY);
+        if (authorization == null) {
+            return null;
+        }
+        return String.format("space:%s:%s:%s", ReadableSpaces.sha256(authorization), space, schemaVersion.of(space));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import eu.ebrains.kg.service.configuration.OauthClient;
+import eu.ebrains.kg.service.models.user.Space;
+import eu.ebrains.kg.service.services.SpaceClient;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Remembers (for a short time) which spaces the user of the current request is allowed to read. This allows to share
+ * responses which depend on the permissions of the user between all users with the same permissions.
+ */
+@Component
+public class ReadableSpaces {
+
+    private static final String READABLE_SPACES_CACHE = "readableSpaces";
+
+    private final SpaceClient spaceClient;
+    private final Cache readableSpacesCache;
+    private final HttpServletRequest request;
+    private final StaleWhileRevalidate staleWhileRevalidate;
+
+    public ReadableSpaces(SpaceClient spaceClient, CacheManager cacheManager, HttpServletRequest request, StaleWhileRevalidate staleWhileRevalidate) {
+        this.spaceClient = spaceClient;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.readableSpacesCache = cacheManager.getCache(READABLE_SPACES_CACHE);
+        this.request = request;
+    }
+
+    public boolean canRead(String space) {
+        HashSet<String> readableSpaces = ofCurrentUser();
+        return readableSpaces != null && readableSpaces.contains(space);
+    }
+
+    /**
+     * @return a fingerprint of the spaces readable by the user of the current request (or null if there is no user) -
+     * users with the same fingerprint are allowed to read the same spaces.
+     */
+    public String fingerprint() {
+        HashSet<String> readableSpaces = ofCurrentUser();
+        return readableSpaces != null ? sha256(String.join("\n", new TreeSet<>(readableSpaces))) : null;
+    }
+
+    private HashSet<String> ofCurrentUser() {
+        String authorization = request.getHeader(OauthClient.AUTHORIZATION_KEY);
+        if (authorization == null) {
+            return null;
+        }
+        // We don't want to keep the tokens in memory - so we identify the user by their hash
+        String key = sha256(authorization);
+        return staleWhileRevalidate.get(readableSpacesCache, key, () -> spaceClient.getSpacesMono()
+                .defaultIfEmpty(Collections.emptyList())
+                .map(ReadableSpaces::toReadableSpaces)).block();
+    }
+
+    private static HashSet<String> toReadableSpaces(List<Space> spaces) {
+        HashSet<String> readableSpaces = new HashSet<>();
+        spaces.stream().filter(s -> s.getPermissions() != null && s.getPermissions().isCanRead())
+                .flatMap(s -> Stream.of(s.getId(), s.getName()))
+                .filter(Objects::nonNull)
+                .forEach(readableSpaces::add);
+        return readableSpaces;
+    }
+
+    static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the changes of the schema (the types assigned to the spaces) applied through the editor. Everything
+ * cached for a space is valid for a specific version only - a change of the schema therefore invalidates it. The
+ * changes are published on the {@link InvalidationBus} so all instances of the editor apply them.
+ */
+@Component
+public class SchemaVersion {
+
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final ConcurrentMap<String, Long> spaceVersions = new ConcurrentHashMap<>();
+    private final InvalidationBus invalidationBus;
+
+    public SchemaVersion(InvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(this::apply);
+    }
+
+    public String of(String space) {
+        return String.format("%d.%d", globalVersion.get(), spaceVersions.getOrDefault(space, 0L));
+    }
+
+    /**
+     * @return a cache key for the given space which is only valid for its current schema version
+     */
+    public SpaceKey keyOf(String space) {
+        return new SpaceKey(space, of(space), null);
+    }
+
+    public boolean isCurrent(SpaceKey key) {
+        return key.version().equals(of(key.space()));
+    }
+
+    public void increment(String space) {
+        invalidationBus.publish(Invalidation.ofSpace(space));
+    }
+
+    public void incrementAll() {
+        invalidationBus.publish(Invalidation.ofAll());
+    }
+
+    private void apply(Invalidation invalidation) {
+        if (invalidation.space() == null) {
+            globalVersion.incrementAndGet();
+        } else {
+            spaceVersions.merge(invalidation.space(), 1L, Long::sum);
+        }
+    }
+}
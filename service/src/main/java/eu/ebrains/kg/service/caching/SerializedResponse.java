@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body which is serialized (and compressed) once so it can be served repeatedly without any further
+ * serialization work - as JSON or Smile, depending on what the client accepts. It is identified by a strong ETag
+ * derived from its content.
+ */
+public class SerializedResponse implements Serializable {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    private static final String GZIP = "gzip";
+    private static final String SMILE = "smile";
+
+    private final byte[] json;
+    private final byte[] gzippedJson;
+    private final byte[] smile;
+    private final byte[] gzippedSmile;
+    private final String etag;
+
+    private SerializedResponse(byte[] json, byte[] smile, String etag) {
+        this.json = json;
+        this.gzippedJson = gzip(json);
+        this.smile = smile;
+        this.gzippedSmile = gzip(smile);
+        this.etag = etag;
+    }
+
+    public static SerializedResponse of(ObjectMapper objectMapper, ObjectMapper smileObjectMapper, Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            return new SerializedResponse(json, smileObjectMapper.writeValueAsBytes(body), DigestUtils.md5DigestAsHex(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Was not able to serialize the response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    private String quotedEtag(boolean isSmile, boolean gzipped) {
+        // Strong validators need to differ between the representations of the same resource
+        return ETags.quote(String.format("%s%s%s", etag, isSmile ? "-" + SMILE : "", gzipped ? "-" + GZIP : ""));
+    }
+
+    /**
+     * @return true if the client prefers Smile over JSON according to the "Accept" header of the given request headers
+     */
+    public static boolean acceptsSmile(HttpHeaders requestHeaders) {
+        List<MediaType> accepted = new ArrayList<>(requestHeaders.getAccept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+        return accepted.stream().filter(m -> m.isCompatibleWith(MediaType.APPLICATION_JSON) || m.isCompatibleWith(APPLICATION_SMILE))
+                .findFirst().map(m -> m.equalsTypeAndSubtype(APPLICATION_SMILE)).orElse(false);
+    }
+
+    /**
+     * @return the response for a request with the given headers: either a 304 (if the client knows this version
+     * already) or the body in the format preferred by the client - compressed if the client accepts gzip.
+     */
+    public ResponseEntity<byte[]> toResponseEntity(HttpHeaders requestHeaders) {
+        boolean gzipped = AcceptEncoding.acceptsGzip(requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING));
+        boolean isSmile = acceptsSmile(requestHeaders);
+        String quotedEtag = quotedEtag(isSmile, gzipped);
+        // Only the validator of the selected representation counts - the client might hold the bytes of another one
+        boolean notModified = ETags.matches(requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH), quotedEtag);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(quotedEtag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (notModified) {
+            return builder.build();
+        }
+        builder.contentType(isSmile ? APPLICATION_SMILE : MediaType.APPLICATION_JSON);
+        if (gzipped) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(isSmile ? gzippedSmile : gzippedJson);
+        }
+        return builder.body(isSmile ? smile : json);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Serves values of a cache region which are older than the soft TTL of the region ("kg.cache.staleAfter.{region}")
+ * right away and refreshes them in the background. The hard TTL is the expiry of the region itself - values which
+ * are gone have to be loaded synchronously. Regions without a soft TTL are never refreshed in the background.
+ *
+ * Since the web clients need access to the original request, the refreshing requests are always prepared in the
+ * thread of the request which has found the stale value - only their execution happens in the background.
+ */
+@Component
+public class StaleWhileRevalidate {
+
+    private static final String STALE_AFTER_PROPERTY = "kg.cache.staleAfter.%s";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Environment environment;
+    private final Map<String, Duration> staleAfterByRegion = new ConcurrentHashMap<>();
+    private final Map<List<Object>, Boolean> revalidating = new ConcurrentHashMap<>();
+
+    public StaleWhileRevalidate(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @return the value of the cache (refreshing it in the background if it is stale) or the one provided by the
+     * loader if there is none (which is cached then).
+     */
+    public <T> Mono<T> get(Cache cache, Object key, Supplier<Mono<T>> loader) {
+        TimestampedValue cached = lookup(cache, key);
+        if (cached == null) {
+            return loader.get().doOnNext(value -> put(cache, key, value));
+        }
+        if (isStale(cache, cached)) {
+            revalidate(cache, key, () -> loader.get().doOnNext(value -> put(cache, key, value)));
+        }
+        // The values of a key are always provided by the same loader
+        @SuppressWarnings("unchecked")
+        T value = (T) cached.getValue();
+        return Mono.justOrEmpty(value);
+    }
+
+    public TimestampedValue lookup(Cache cache, Object key) {
+        return cache.get(key, TimestampedValue.class);
+    }
+
+    public void put(Cache cache, Object key, Object value) {
+        cache.put(key, new TimestampedValue(value, System.currentTimeMillis()));
+    }
+
+    public boolean isStale(Cache cache, TimestampedValue value) {
+        Duration staleAfter = staleAfterByRegion.computeIfAbsent(cache.getName(),
+                region -> environment.getProperty(String.format(STALE_AFTER_PROPERTY, region), Duration.class, Duration.ZERO));
+        return !staleAfter.isZero() && System.currentTimeMillis() - value.getLoadedAt() > staleAfter.toMillis();
+    }
+
+    /**
+     * Executes the refresh in the background - unless there is already one running for the same key. The refresh is
+     * responsible for updating the cache.
+     */
+    public void revalidate(Cache cache, Object key, Supplier<Mono<?>> refresh) {
+        revalidate(cache, List.of(key), keys -> refresh.get());
+    }
+
+    /**
+     * Refreshes the given keys with a single refresh in the background - the keys which are already refreshed by another
+     * one are left out (and nothing is executed if none remains). The refresh is responsible for updating the cache.
+     */
+    public <K> void revalidate(Cache cache, Collection<K> keys, Function<List<K>, Mono<?>> refresh) {
+        List<K> claimed = keys.stream().filter(key -> revalidating.putIfAbsent(List.of(cache.getName(), key), Boolean.TRUE) == null).toList();
+        if (claimed.isEmpty()) {
+            return;
+        }
+        Runnable release = () -> claimed.forEach(key -> revalidating.remove(List.of(cache.getName(), key)));
+        try {
+            refresh.apply(claimed).doFinally(signal -> release.run()).subscribe(
+                    value -> {},
+                    e -> logger.warn("Was not able to refresh {} of cache {}: {}", claimed, cache.getName(), e.getMessage()));
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+}
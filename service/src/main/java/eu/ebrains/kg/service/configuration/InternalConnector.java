@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.configuration;
+
+import org.apache.catalina.connector.Connector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens an additional connector for the traffic between the instances of the editor (the broadcast of cache
+ * invalidations). Its port is not meant to be exposed by the ingress - the internal endpoints only accept requests
+ * which arrived on it.
+ */
+@Component
+@ConditionalOnProperty(name = "kg.invalidation.transport", havingValue = "broadcast")
+public class InternalConnector implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    private final int port;
+
+    public InternalConnector(@Value("${kg.invalidation.port:8090}") int port) {
+        this.port = port;
+    }
+
+    public boolean isInternal(int localPort) {
+        return localPort == port;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+        connector.setPort(port);
+        factory.addAdditionalTomcatConnectors(connector);
+    }
+}
@@ -23,11 +23,18 @@
 
 package eu.ebrains.kg.service.configuration;
 
+import eu.ebrains.kg.service.resilience.ConcurrencyLimiter;
+import eu.ebrains.kg.service.resilience.Deadline;
+import eu.ebrains.kg.service.resilience.DeadlineFilter;
+import eu.ebrains.kg.service.resilience.HedgingFilter;
+import eu.ebrains.kg.service.resilience.KgCoreLoadBalancer;
+import eu.ebrains.kg.service.resilience.RequestLane;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.RemoveAuthorizedClientOAuth2AuthorizationFailureHandler;
@@ -47,13 +54,26 @@ public class OauthClient {
 
 
     public static final String AUTHORIZATION_KEY = "Authorization";
+    public static final String CLIENT_REGISTRATION_ID = "kg";
     private static final String USER_AUTHORIZATION_KEY = "User-Authorization";
     private static final java.lang.String CLIENT_AUTHORIZATION_KEY = "Client-Authorization";
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The lane and the deadline of the original request are attached to the upstream calls here, since this is
+     * executed in the original thread.
+     */
+    private static void attachRequestContext(WebClient.RequestHeadersSpec<?> request) {
+        request.attribute(RequestLane.ATTRIBUTE, RequestLane.current());
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            request.attribute(Deadline.ATTRIBUTE, deadline);
+        }
+    }
     @Bean
     @Qualifier("asUserWithServiceAccount")
-    WebClient userWithServiceAccountWebClient(ClientRegistrationRepository clientRegistrations, OAuth2AuthorizedClientService authorizedClientService, HttpServletRequest request) {
+    WebClient userWithServiceAccountWebClient(ClientRegistrationRepository clientRegistrations, OAuth2AuthorizedClientService authorizedClientService, HttpServletRequest request, ClientHttpConnector upstreamConnector, DeadlineFilter deadlineFilter, HedgingFilter hedgingFilter, ConcurrencyLimiter concurrencyLimiter, KgCoreLoadBalancer kgCoreLoadBalancer) {
         AuthorizedClientServiceOAuth2AuthorizedClientManager clientManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrations, authorizedClientService);
         ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2 =  new ServletOAuth2AuthorizedClientExchangeFilterFunction(clientManager);
         oauth2.setAuthorizationFailureHandler(new RemoveAuthorizedClientOAuth2AuthorizationFailureHandler(
@@ -62,8 +82,8 @@ public class OauthClient {
                     authorizedClientService.removeAuthorizedClient(clientRegistrationId, principal.getName());
                 })
         );
-        oauth2.setDefaultClientRegistrationId("kg");
-        return WebClient.builder().exchangeStrategies(exchangeStrategies).apply(oauth2.oauth2Configuration()).filter((clientRequest, nextFilter) ->{
+        oauth2.setDefaultClientRegistrationId(CLIENT_REGISTRATION_ID);
+        return WebClient.builder().clientConnector(upstreamConnector).exchangeStrategies(exchangeStrategies).filter(deadlineFilter).apply(oauth2.oauth2Configuration()).filter(hedgingFilter).filter(concurrencyLimiter).filter(kgCoreLoadBalancer).defaultRequest(OauthClient::attachRequestContext).filter((clientRequest, nextFilter) ->{
             ClientRequest updatedHeaders = ClientRequest.from(clientRequest).headers(h -> {
                 //Spring adds the oauth2 bearer token to the standard "Authorization" header -> we want it to be sent as
                 // "Client-Authorization" though to let the user token be handed in properly.
@@ -82,10 +102,22 @@ public class OauthClient {
             r.header(USER_AUTHORIZATION_KEY, request.getHeader(AUTHORIZATION_KEY))
         ).build();
     }
+    @Bean
+    @Qualifier("asServiceAccountOnly")
+    WebClient serviceAccountOnlyWebClient(ClientRegistrationRepository clientRegistrations, OAuth2AuthorizedClientService authorizedClientService, ClientHttpConnector upstreamConnector, DeadlineFilter deadlineFilter, HedgingFilter hedgingFilter, ConcurrencyLimiter concurrencyLimiter, KgCoreLoadBalancer kgCoreLoadBalancer) {
+        /**
+         * This client doesn't depend on an incoming request - it can therefore be used in background tasks too.
+         */
+        AuthorizedClientServiceOAuth2AuthorizedClientManager clientManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrations, authorizedClientService);
+        ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2 =  new ServletOAuth2AuthorizedClientExchangeFilterFunction(clientManager);
+        oauth2.setDefaultClientRegistrationId(CLIENT_REGISTRATION_ID);
+        return WebClient.builder().clientConnector(upstreamConnector).exchangeStrategies(exchangeStrategies).filter(deadlineFilter).apply(oauth2.oauth2Configuration()).filter(hedgingFilter).filter(concurrencyLimiter).filter(kgCoreLoadBalancer).defaultRequest(OauthClient::attachRequestContext).build();
+    }
+
     @Bean
     @Qualifier("asUserOnly")
-    WebClient userOnlyWebClient(HttpServletRequest request) {
-        return WebClient.builder().exchangeStrategies(exchangeStrategies).defaultRequest(r -> {
+    WebClient userOnlyWebClient(HttpServletRequest request, ClientHttpConnector upstreamConnector, DeadlineFilter deadlineFilter, HedgingFilter hedgingFilter, ConcurrencyLimiter concurrencyLimiter, KgCoreLoadBalancer kgCoreLoadBalancer) {
+        return WebClient.builder().clientConnector(upstreamConnector).exchangeStrategies(exchangeStrategies).filter(deadlineFilter).filter(hedgingFilter).filter(concurrencyLimiter).filter(kgCoreLoadBalancer).defaultRequest(OauthClient::attachRequestContext).defaultRequest(r -> {
             /**
              * We just reuse the original authorization header for the given request and we
              * explicitly don't want a client authorization
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.configuration;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.config.ResourceType;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+
+/**
+ * Adds an off-heap tier to the schema related caches for which a size is configured ("kg.cache.offheap.{cache}").
+ * Entries in this tier are stored serialized outside of the Java heap (and therefore don't contribute to the garbage
+ * collection) - they are deserialized on access and are promoted to the heap tier.
+ * Since the XML configuration of Ehcache can not be parameterized, the caches are recreated from their XML
+ * configuration with the additional tier.
+ */
+@Component
+public class OffHeapCacheTiers implements JCacheManagerCustomizer {
+
+    private static final List<String> SCHEMA_CACHES = List.of("allTypes", "typeStructure", "spaceTypesResponse");
+    private static final String OFFHEAP_PROPERTY = "kg.cache.offheap.%s";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Environment environment;
+
+    public OffHeapCacheTiers(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void customize(CacheManager cacheManager) {
+        SCHEMA_CACHES.forEach(name -> {
+            DataSize offHeapSize = environment.getProperty(String.format(OFFHEAP_PROPERTY, name), DataSize.class);
+            Cache<Object, Object> cache = cacheManager.getCache(name);
+            if (offHeapSize != null && offHeapSize.toMegabytes() > 0 && cache != null) {
+                addOffHeapTier(cacheManager, cache, offHeapSize);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked") // The configurations of Ehcache can only be unwrapped by their raw types
+    private void addOffHeapTier(CacheManager cacheManager, Cache<Object, Object> cache, DataSize offHeapSize) {
+        Eh107Configuration<Object, Object> eh107Configuration = cache.getConfiguration(Eh107Configuration.class);
+        CacheRuntimeConfiguration<Object, Object> configuration = eh107Configuration.unwrap(CacheRuntimeConfiguration.class);
+        SizedResourcePool heap = configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP);
+        if (heap.getUnit() instanceof MemoryUnit unit && unit.toBytes(heap.getSize()) >= offHeapSize.toBytes()) {
+            logger.warn("The off-heap tier of cache {} has to be larger than its heap tier - it is therefore not added", cache.getName());
+            return;
+        }
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder()
+                .with(heap)
+                .offheap(offHeapSize.toMegabytes(), MemoryUnit.MB);
+        CacheConfiguration<Object, Object> withOffHeap = CacheConfigurationBuilder.newCacheConfigurationBuilder(configuration)
+                .withResourcePools(resourcePools)
+                .build();
+        String name = cache.getName();
+        cacheManager.destroyCache(name);
+        cacheManager.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(withOffHeap));
+        logger.info("Added an off-heap tier of {} MB to cache {}", offHeapSize.toMegabytes(), name);
+    }
+}
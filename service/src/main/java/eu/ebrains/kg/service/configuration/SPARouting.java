@@ -1,10 +1,17 @@
 package eu.ebrains.kg.service.configuration;
 
+import eu.ebrains.kg.service.caching.AcceptEncoding;
+import eu.ebrains.kg.service.caching.ETags;
 import eu.ebrains.kg.service.constants.Constants;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.servlet.function.RequestPredicate;
 import org.springframework.web.servlet.function.RouterFunction;
 import org.springframework.web.servlet.function.ServerResponse;
@@ -13,17 +20,56 @@ import static org.springframework.web.servlet.function.RequestPredicates.path;
 import static org.springframework.web.servlet.function.RequestPredicates.pathExtension;
 import static org.springframework.web.servlet.function.RouterFunctions.route;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @Configuration
 public class SPARouting {
 
+    private static final String GZIP = "gzip";
+
     @Bean
-    RouterFunction<ServerResponse> spaRouter() {
+    RouterFunction<ServerResponse> spaRouter() throws IOException {
         ClassPathResource index = new ClassPathResource("public/index.html");
         List<String> extensions = Arrays.asList("js", "css", "ico", "png", "jpg", "gif", "html", "svg");
         RequestPredicate spaPredicate = path( Constants.ROOT_PATH_OF_API+"/**").or(path("/error")).or(pathExtension(extensions::contains)).negate();
-        return route(spaPredicate, request -> ServerResponse.ok().contentType(MediaType.TEXT_HTML).body(index));
+        if (!index.exists()) {
+            // The UI is not part of the build (e.g. when running the service on its own)
+            return route(spaPredicate, request -> ServerResponse.notFound().build());
+        }
+        // The index is small and requested on every (re-)load of the editor - so we keep it in memory
+        byte[] content;
+        try (InputStream in = index.getInputStream()) {
+            content = StreamUtils.copyToByteArray(in);
+        }
+        byte[] gzippedContent = gzip(content);
+        String etag = ETags.quote(DigestUtils.md5DigestAsHex(content));
+        String gzippedEtag = ETags.quote(String.format("%s-%s", DigestUtils.md5DigestAsHex(content), GZIP));
+        return route(spaPredicate, request -> {
+            boolean gzipped = AcceptEncoding.acceptsGzip(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+            String servedEtag = gzipped ? gzippedEtag : etag;
+            boolean notModified = ETags.matches(request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH), servedEtag);
+            ServerResponse.BodyBuilder response = ServerResponse.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                    .eTag(servedEtag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+            if (notModified) {
+                return response.build();
+            }
+            response.contentType(MediaType.TEXT_HTML);
+            return gzipped ? response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(gzippedContent) : response.body(content);
+        });
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.ClientCredentialsOAuth2AuthorizedClientProvider;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Renews the token of the service account ahead of its expiry. The web clients share the authorized clients - so they
+ * always find a valid token and never have to wait for Keycloak while handling a user request.
+ */
+@Component
+public class ServiceAccountTokenRefresher {
+
+    /**
+     * The principal the web clients authorize the service account for (there is no authenticated user in this service)
+     */
+    private static final Authentication PRINCIPAL = new AnonymousAuthenticationToken("anonymous", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AuthorizedClientServiceOAuth2AuthorizedClientManager clientManager;
+
+    public ServiceAccountTokenRefresher(ClientRegistrationRepository clientRegistrations, OAuth2AuthorizedClientService authorizedClientService, @Value("${kg.serviceAccount.refreshAhead:2m}") Duration refreshAhead) {
+        ClientCredentialsOAuth2AuthorizedClientProvider provider = new ClientCredentialsOAuth2AuthorizedClientProvider();
+        // The token is considered as expired (and is therefore renewed) once it expires within the given time
+        provider.setClockSkew(refreshAhead);
+        this.clientManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrations, authorizedClientService);
+        this.clientManager.setAuthorizedClientProvider(provider);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${kg.serviceAccount.refreshCheckInterval:30000}")
+    public void refresh() {
+        try {
+            OAuth2AuthorizedClient authorizedClient = clientManager.authorize(OAuth2AuthorizeRequest.withClientRegistrationId(OauthClient.CLIENT_REGISTRATION_ID).principal(PRINCIPAL).build());
+            if (authorizedClient == null) {
+                logger.warn("Was not able to authorize the service account");
+            }
+        } catch (RuntimeException e) {
+            // The web clients will try again on demand
+            logger.warn("Was not able to refresh the token of the service account: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+/**
+ * Serves the hashed assets of the UI build (the ones in "static") with their pre-compressed variants (created at build
+ * time) and lets the browsers cache them forever - their names change with their content. Only found assets are cached:
+ * an asset which is missing (e.g. on an old instance during a rolling deployment) must be requested again.
+ */
+@Configuration
+public class StaticResources implements WebMvcConfigurer {
+
+    private static final String HASHED_ASSETS = "/static/**";
+
+    /**
+     * The cache control of Spring doesn't support "immutable" - the resource handler applies it to found resources only.
+     */
+    private static final CacheControl CACHE_FOREVER = new CacheControl() {
+        @Override
+        public String getHeaderValue() {
+            return "public, max-age=31536000, immutable";
+        }
+    };
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler(HASHED_ASSETS)
+                .addResourceLocations("classpath:/public/static/")
+                .setCacheControl(CACHE_FOREVER)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new PathResourceResolver());
+    }
+}
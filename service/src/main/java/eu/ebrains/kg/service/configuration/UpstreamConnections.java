@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.configuration;
+
+import eu.ebrains.kg.service.resilience.KgCoreLoadBalancer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures a named connection pool per upstream service ("kgcore" for all KG core nodes, "identity" for everything
+ * else, namely the identity service). Each pool is configured by "kg.http.[name].*" and exposes its metrics (active,
+ * idle and pending connections as well as the acquire time) through Micrometer - so stalls while acquiring
+ * connections become visible.
+ */
+@Configuration
+public class UpstreamConnections {
+
+    private static final String KG_CORE = "kgcore";
+    private static final String IDENTITY = "identity";
+
+    private final Environment environment;
+
+    public UpstreamConnections(Environment environment) {
+        this.environment = environment;
+    }
+
+    private <T> T property(String pool, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty(String.format("kg.http.%s.%s", pool, name), type, defaultValue);
+    }
+
+    private ConnectionProvider connectionProvider(String pool) {
+        return ConnectionProvider.builder(pool)
+                .maxConnections(property(pool, "maxConnections", Integer.class, 100))
+                .pendingAcquireMaxCount(property(pool, "pendingAcquireMaxCount", Integer.class, 1000))
+                .pendingAcquireTimeout(property(pool, "pendingAcquireTimeout", Duration.class, Duration.ofSeconds(10)))
+                .maxIdleTime(property(pool, "maxIdleTime", Duration.class, Duration.ofSeconds(30)))
+                .maxLifeTime(property(pool, "maxLifeTime", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(property(pool, "evictionInterval", Duration.class, Duration.ofSeconds(30)))
+                .metrics(true)
+                .build();
+    }
+
+    private ReactorClientHttpConnector connector(String pool, ConnectionProvider connectionProvider) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.SO_KEEPALIVE, property(pool, "keepAlive", Boolean.class, true))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) property(pool, "connectTimeout", Duration.class, Duration.ofSeconds(5)).toMillis())
+                // The URIs are not used as tags to keep the number of meters bounded
+                .metrics(true, uri -> pool);
+        if (property(pool, "http2", Boolean.class, false)) {
+            // HTTP/2 is negotiated with the server (and HTTP/1.1 is used if it is not supported)
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    @Qualifier(KG_CORE)
+    ConnectionProvider kgCoreConnectionProvider() {
+        return connectionProvider(KG_CORE);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    @Qualifier(IDENTITY)
+    ConnectionProvider identityConnectionProvider() {
+        return connectionProvider(IDENTITY);
+    }
+
+    /**
+     * @return the connector routing the requests to the connection pool of their upstream service. The time until a
+     * connection is available (acquired from the pool or newly established) is measured per pool.
+     */
+    @Bean
+    ClientHttpConnector upstreamConnector(@Qualifier(KG_CORE) ConnectionProvider kgCoreConnectionProvider, @Qualifier(IDENTITY) ConnectionProvider identityConnectionProvider, KgCoreLoadBalancer kgCoreLoadBalancer, MeterRegistry meterRegistry) {
+        ClientHttpConnector kgCore = connector(KG_CORE, kgCoreConnectionProvider);
+        ClientHttpConnector identity = connector(IDENTITY, identityConnectionProvider);
+        Timer kgCoreAcquireTime = Timer.builder("kg.upstream.connection.acquire").tag("pool", KG_CORE).register(meterRegistry);
+        Timer identityAcquireTime = Timer.builder("kg.upstream.connection.acquire").tag("pool", IDENTITY).register(meterRegistry);
+        return (method, uri, requestCallback) -> {
+            boolean isKgCore = kgCoreLoadBalancer.isKgCore(uri);
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return (isKgCore ? kgCore : identity).connect(method, uri, request -> {
+                    (isKgCore ? kgCoreAcquireTime : identityAcquireTime).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return requestCallback.apply(request);
+                });
+            });
+        };
+    }
+}
@@ -3,5 +3,6 @@ package eu.ebrains.kg.service.constants;
 public class Constants {
 
     public static final String ROOT_PATH_OF_API = "/api";
+    public static final String IRI_COMPACTION_HEADER = "X-Compact-IRIs";
 
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Compacts the IRIs of responses with a prefix table (provided as "@context" in the response) and expands them again
+ * in payloads which are sent back with such a table. Next to the keys, only the values of properties known to contain
+ * IRIs are affected. Only objects can carry the prefix table - other responses (e.g. top level arrays) are therefore
+ * never compacted.
+ */
+@Component
+public class IriController {
+
+    static final String CONTEXT = "@context";
+    private static final String PREFIX = "ns";
+    private static final Set<String> IRI_PROPERTIES = Set.of("@type", "fullyQualifiedName", "defaultTargetType", "labelField", "promotedFields");
+    private static final Set<String> TYPE_PROPERTIES = Set.of("types", "targetTypes", "type");
+    private static final String TYPE_NAME = "name";
+
+    public static boolean isCompactable(Object body) {
+        return body != null && !(body instanceof Collection<?> || body.getClass().isArray() || body instanceof CharSequence || body instanceof Number || body instanceof Boolean);
+    }
+
+    public JsonNode compact(JsonNode node) {
+        if (!(node instanceof ObjectNode)) {
+            return node;
+        }
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        JsonNode compacted = compact(node, null, prefixes);
+        if (compacted instanceof ObjectNode object && !prefixes.isEmpty()) {
+            ObjectNode context = JsonNodeFactory.instance.objectNode();
+            prefixes.forEach((namespace, prefix) -> context.put(prefix, namespace));
+            object.set(CONTEXT, context);
+        }
+        return compacted;
+    }
+
+    private JsonNode compact(JsonNode node, String property, Map<String, String> prefixes) {
+        if (node instanceof ObjectNode object) {
+            ObjectNode result = JsonNodeFactory.instance.objectNode();
+            boolean isType = property != null && TYPE_PROPERTIES.contains(property);
+            object.fields().forEachRemaining(e -> {
+                if (isType && e.getKey().equals(TYPE_NAME) && e.getValue().isTextual()) {
+                    result.set(e.getKey(), new TextNode(compactIri(e.getValue().asText(), prefixes)));
+                } else {
+                    result.set(compactIri(e.getKey(), prefixes), compact(e.getValue(), e.getKey(), prefixes));
+                }
+            });
+            return result;
+        } else if (node instanceof ArrayNode array) {
+            ArrayNode result = JsonNodeFactory.instance.arrayNode(array.size());
+            array.forEach(element -> result.add(compact(element, property, prefixes)));
+            return result;
+        } else if (node.isTextual() && isIriProperty(property)) {
+            return new TextNode(compactIri(node.asText(), prefixes));
+        }
+        return node;
+    }
+
+    private static boolean isIriProperty(String property) {
+        return property != null && (IRI_PROPERTIES.contains(property) || TYPE_PROPERTIES.contains(property));
+    }
+
+    private static String compactIri(String value, Map<String, String> prefixes) {
+        if (!value.startsWith("http://") && !value.startsWith("https://")) {
+            return value;
+        }
+        int namespaceEnd = Math.max(value.lastIndexOf('/'), value.lastIndexOf('#')) + 1;
+        if (namespaceEnd <= "https://".length() || namespaceEnd == value.length()) {
+            return value;
+        }
+        String prefix = prefixes.computeIfAbsent(value.substring(0, namespaceEnd), k -> PREFIX + prefixes.size());
+        return String.format("%s:%s", prefix, value.substring(namespaceEnd));
+    }
+
+    /**
+     * Expands the compacted IRIs of the payload if it provides a prefix table - otherwise the payload is returned as is.
+     */
+    public Map<String, Object> expand(Map<String, Object> payload) {
+        if (payload != null && payload.get(CONTEXT) instanceof Map<?, ?> context) {
+            Map<String, String> namespaces = new HashMap<>();
+            context.forEach((k, v) -> namespaces.put(k.toString(), v.toString()));
+            payload.remove(CONTEXT);
+            return expandMap(payload, null, namespaces);
+        }
+        return payload;
+    }
+
+    private Map<String, Object> expandMap(Map<?, ?> map, String property, Map<String, String> namespaces) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        boolean isType = property != null && TYPE_PROPERTIES.contains(property);
+        map.forEach((k, v) -> {
+            String key = k.toString();
+            if (isType && key.equals(TYPE_NAME) && v instanceof String name) {
+                result.put(key, expandIri(name, namespaces));
+            } else {
+                result.put(expandIri(key, namespaces), expand(v, key, namespaces));
+            }
+        });
+        return result;
+    }
+
+    private Object expand(Object value, String property, Map<String, String> namespaces) {
+        if (value instanceof Map<?, ?> map) {
+            return expandMap(map, property, namespaces);
+        } else if (value instanceof List<?> list) {
+            List<Object> result = new ArrayList<>(list.size());
+            list.forEach(element -> result.add(expand(element, property, namespaces)));
+            return result;
+        } else if (value instanceof String s && isIriProperty(property)) {
+            return expandIri(s, namespaces);
+        }
+        return value;
+    }
+
+    private static String expandIri(String value, Map<String, String> namespaces) {
+        int separator = value.indexOf(':');
+        if (separator > 0) {
+            String namespace = namespaces.get(value.substring(0, separator));
+            if (namespace != null) {
+                return namespace + value.substring(separator + 1);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import eu.ebrains.kg.service.models.instance.InstanceSummary;
+import eu.ebrains.kg.service.models.instance.NormalizedInstances;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class NormalizationController {
+
+    static final String DEFINITION = "definition";
+    private static final List<String> INSTANCE_SPECIFIC_FIELD_PROPERTIES = List.of("value", "isInferred");
+
+    private final ObjectMapper objectMapper;
+
+    public NormalizationController(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Moves the type descriptions, the field definitions and the possible incoming links of the instances into
+     * dictionaries. The instances refer to the types by name and to the definitions by key (the name of the field or
+     * the property - suffixed if there are different definitions for the same name).
+     */
+    public <T extends InstanceSummary> NormalizedInstances normalize(Map<String, T> instances) {
+        NormalizedInstances result = new NormalizedInstances();
+        instances.forEach((id, instance) -> {
+            JsonNode node = objectMapper.valueToTree(instance);
+            if (node instanceof ObjectNode instanceNode) {
+                normalizeTypes(instanceNode, result.getTypes());
+                normalizeFields(instanceNode, result.getFields());
+                normalizeIncomingLinks(instanceNode, result.getIncomingLinks());
+            }
+            result.getInstances().put(id, node);
+        });
+        return result;
+    }
+
+    private void normalizeTypes(ObjectNode instance, Map<String, JsonNode> types) {
+        if (instance.get("types") instanceof ArrayNode instanceTypes) {
+            for (int i = 0; i < instanceTypes.size(); i++) {
+                JsonNode name = instanceTypes.get(i).get("name");
+                if (name != null) {
+                    types.putIfAbsent(name.asText(), instanceTypes.get(i));
+                    instanceTypes.set(i, name);
+                }
+            }
+        }
+    }
+
+    private void normalizeFields(ObjectNode instance, Map<String, JsonNode> definitions) {
+        if (instance.get("fields") instanceof ObjectNode fields) {
+            Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JsonNode> field = iterator.next();
+                if (field.getValue() instanceof ObjectNode fieldNode) {
+                    ObjectNode reference = objectMapper.createObjectNode();
+                    INSTANCE_SPECIFIC_FIELD_PROPERTIES.forEach(p -> {
+                        JsonNode value = fieldNode.remove(p);
+                        if (value != null) {
+                            reference.set(p, value);
+                        }
+                    });
+                    reference.put(DEFINITION, intern(field.getKey(), fieldNode, definitions));
+                    field.setValue(reference);
+                }
+            }
+        }
+    }
+
+    private void normalizeIncomingLinks(ObjectNode instance, Map<String, JsonNode> definitions) {
+        if (instance.get("possibleIncomingLinks") instanceof ObjectNode incomingLinks) {
+            Iterator<Map.Entry<String, JsonNode>> iterator = incomingLinks.fields();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JsonNode> incomingLink = iterator.next();
+                incomingLink.setValue(new TextNode(intern(incomingLink.getKey(), incomingLink.getValue(), definitions)));
+            }
+        }
+    }
+
+    private static String intern(String name, JsonNode definition, Map<String, JsonNode> definitions) {
+        String key = name;
+        for (int i = 2; definitions.containsKey(key); i++) {
+            if (definitions.get(key).equals(definition)) {
+                return key;
+            }
+            key = String.format("%s#%d", name, i);
+        }
+        definitions.put(key, definition);
+        return key;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.service.caching.SerializedResponse;
+import eu.ebrains.kg.service.models.KGCoreResult;
+import eu.ebrains.kg.service.services.AuthClient;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the serialized settings in memory. The settings depend on the authentication endpoint only which is therefore
+ * refreshed in the background - user requests never have to wait for it (unless it has never been available yet).
+ */
+@Component
+public class SettingsController {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AuthClient authClient;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileObjectMapper;
+    private final String commit;
+    private final String keycloakRealm;
+    private final String keycloakClientId;
+    private final String sentryDsnUi;
+    private final String sentryEnvironment;
+    private final String matomoUrl;
+    private final String matomoSiteId;
+
+    private volatile SerializedResponse settings;
+
+    public SettingsController(AuthClient authClient,
+                              ObjectMapper objectMapper,
+                              MappingJackson2SmileHttpMessageConverter smileConverter,
+                              @Value("${eu.ebrains.kg.commit}") String commit,
+                              @Value("${keycloak.realm}") String keycloakRealm,
+                              @Value("${keycloak.resource}") String keycloakClientId,
+                              @Value("${sentry.dsn.ui}") String sentryDsnUi,
+                              @Value("${sentry.environment}") String sentryEnvironment,
+                              @Value("${matomo.url}") String matomoUrl,
+                              @Value("${matomo.siteId}") String matomoSiteId) {
+        this.authClient = authClient;
+        this.objectMapper = objectMapper;
+        this.smileObjectMapper = smileConverter.getObjectMapper();
+        this.commit = commit;
+        this.keycloakRealm = keycloakRealm;
+        this.keycloakClientId = keycloakClientId;
+        this.sentryDsnUi = sentryDsnUi;
+        this.sentryEnvironment = sentryEnvironment;
+        this.matomoUrl = matomoUrl;
+        this.matomoSiteId = matomoSiteId;
+    }
+
+    /**
+     * @return the serialized settings or null if the authentication endpoint is not available
+     */
+    public SerializedResponse getSettings() {
+        SerializedResponse current = settings;
+        if (current == null) {
+            refresh();
+            current = settings;
+        }
+        return current;
+    }
+
+    /**
+     * Refreshes the settings ahead of time. If the authentication endpoint can not be reached, the previous settings
+     * are kept.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${kg.settings.refreshInterval:3600000}")
+    public void refresh() {
+        String authEndpoint = authClient.getEndpoint();
+        if (StringUtils.isNotBlank(authEndpoint)) {
+            settings = SerializedResponse.of(objectMapper, smileObjectMapper, buildSettings(authEndpoint));
+        } else {
+            logger.warn("Was not able to refresh the authentication endpoint");
+        }
+    }
+
+    private KGCoreResult.Single buildSettings(String authEndpoint) {
+        KGCoreResult.Single result = new KGCoreResult.Single();
+        Map<String, Object> settingsMap = new HashMap<>();
+        settingsMap.put("keycloak", Map.of(
+                "realm", keycloakRealm,
+                "url", authEndpoint,
+                "clientId", keycloakClientId
+        ));
+        if(StringUtils.isNotBlank(commit) && !commit.equals("\"\"")) {
+            settingsMap.put("commit", commit);
+
+            // Only provide sentry when commit is available, ie on deployed env
+            if (StringUtils.isNotBlank(sentryDsnUi)) {
+                settingsMap.put("sentry", Map.of(
+                        "dsn", sentryDsnUi,
+                        "release", commit,
+                        "environment", sentryEnvironment
+                ));
+            }
+        }
+        if (StringUtils.isNotBlank(matomoUrl) && StringUtils.isNotBlank(matomoSiteId)) {
+            settingsMap.put("matomo", Map.of(
+                    "url", matomoUrl,
+                    "siteId", matomoSiteId
+            ));
+        }
+        result.setData(settingsMap);
+        return result;
+    }
+}
@@ -23,6 +23,12 @@
 
 package eu.ebrains.kg.service.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.service.caching.MissingEntries;
+import eu.ebrains.kg.service.caching.ReadableSpaces;
+import eu.ebrains.kg.service.caching.SchemaVersion;
+import eu.ebrains.kg.service.caching.SerializedResponse;
+import eu.ebrains.kg.service.caching.SpaceKey;
 import eu.ebrains.kg.service.helpers.Helpers;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.type.StructureOfField;
@@ -30,9 +36,17 @@ import eu.ebrains.kg.service.models.type.StructureOfType;
 import eu.ebrains.kg.service.models.user.Space;
 import eu.ebrains.kg.service.services.SpaceClient;
 import org.apache.commons.lang3.SerializationUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -43,17 +57,81 @@ import java.util.stream.Stream;
 @Component
 public class SpaceController {
 
+    private static final String SPACE_TYPES_RESPONSE_CACHE = "spaceTypesResponse";
+
     private final SpaceClient spaceClient;
+    private final SchemaVersion schemaVersion;
+    private final ReadableSpaces readableSpaces;
+    private final MissingEntries missingEntries;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileObjectMapper;
+    private final Cache spaceTypesResponseCache;
+    private final int typeAssignmentConcurrency;
 
-    public SpaceController(SpaceClient spaceClient) {
+    public SpaceController(SpaceClient spaceClient, SchemaVersion schemaVersion, ReadableSpaces readableSpaces, MissingEntries missingEntries, ObjectMapper objectMapper, MappingJackson2SmileHttpMessageConverter smileConverter, CacheManager cacheManager, @Value("${kg.spaces.typeAssignmentConcurrency:6}") int typeAssignmentConcurrency) {
         this.spaceClient = spaceClient;
+        this.schemaVersion = schemaVersion;
+        this.readableSpaces = readableSpaces;
+        this.missingEntries = missingEntries;
+        this.objectMapper = objectMapper;
+        this.smileObjectMapper = smileConverter.getObjectMapper();
+        this.spaceTypesResponseCache = cacheManager.getCache(SPACE_TYPES_RESPONSE_CACHE);
+        this.typeAssignmentConcurrency = typeAssignmentConcurrency;
+    }
+
+    public static class TypesAssignment {
+        private final List<String> assignedTypes;
+        private final Map<String, Throwable> failedTypes;
+        private final List<StructureOfType> structures;
+
+        private TypesAssignment(List<String> assignedTypes, Map<String, Throwable> failedTypes, List<StructureOfType> structures) {
+            this.assignedTypes = assignedTypes;
+            this.failedTypes = failedTypes;
+            this.structures = structures;
+        }
+
+        public List<String> getAssignedTypes() {
+            return assignedTypes;
+        }
+
+        public Map<String, Throwable> getFailedTypes() {
+            return failedTypes;
+        }
+
+        public List<StructureOfType> getStructures() {
+            return structures;
+        }
+
+        private void rethrowFailure() {
+            failedTypes.values().stream().findFirst().ifPresent(e -> {
+                throw e instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e);
+            });
+        }
+    }
+
+    private static class TypeAssignmentOutcome {
+        private final String type;
+        private final Throwable failure;
+
+        private TypeAssignmentOutcome(String type, Throwable failure) {
+            this.type = type;
+            this.failure = failure;
+        }
     }
 
     private boolean hasSpace(String name) {
+        // The spaces readable by the user as well as the ones known to be missing are remembered - so we only have to ask for the remaining ones
+        if (readableSpaces.canRead(name)) {
+            return true;
+        }
+        if (missingEntries.isMissingSpace(name)) {
+            return false;
+        }
         try{
             Space space = spaceClient.getSpace(name);
             return space != null;
         } catch (WebClientResponseException.NotFound e){
+            missingEntries.markMissingSpace(name);
             return false;
         }
         // Other exceptions are not handled here
@@ -63,36 +141,104 @@ public class SpaceController {
     public void initialize(String name, List<String> types) {
         if (!hasSpace(name)) {
             spaceClient.setSpecification(name);
-            addTypesToSpace(name, types);
+            schemaVersion.increment(name);
+            addTypesToSpace(name, types, false).rethrowFailure();
         }
     }
 
-    // Exceptions are handled globally
-    public void addTypesToSpace(String space, List<String> types) {
-        if (!CollectionUtils.isEmpty(types)) {
-            types.forEach(t -> spaceClient.setAssignType(space, t));
+    /**
+     * Assigns the types to the space with a bounded concurrency and reports the outcome per type. If requested, the
+     * structures of the assigned types are fetched as well: the types assigned until only the last assignments are
+     * pending are resolved while those are still running.
+     * If none of the types could be assigned, the failure is thrown (and handled globally).
+     */
+    public TypesAssignment addTypesToSpace(String space, List<String> types, boolean withStructures) {
+        if (CollectionUtils.isEmpty(types)) {
+            return new TypesAssignment(Collections.emptyList(), Collections.emptyMap(), Collections.emptyList());
+        }
+        List<String> uniqueTypes = types.stream().distinct().toList();
+        // All requests are prepared in the current thread since the web client needs access to the original request
+        List<Mono<TypeAssignmentOutcome>> assignments = uniqueTypes.stream().map(t -> spaceClient.assignType(space, t)
+                .then(Mono.just(new TypeAssignmentOutcome(t, null)))
+                .onErrorResume(e -> Mono.just(new TypeAssignmentOutcome(t, e)))).toList();
+        Flux<TypeAssignmentOutcome> outcomes = Flux.merge(Flux.fromIterable(assignments), typeAssignmentConcurrency).cache();
+        List<TypeAssignmentOutcome> results;
+        List<StructureOfType> structures = new ArrayList<>();
+        if (withStructures) {
+            int firstBatchSize = Math.max(uniqueTypes.size() - typeAssignmentConcurrency, 0);
+            Mono<List<String>> firstBatch = assignedTypes(outcomes.take(firstBatchSize));
+            Mono<List<String>> secondBatch = assignedTypes(outcomes.skip(firstBatchSize));
+            Tuple3<List<TypeAssignmentOutcome>, Map<String, KGCoreResult<StructureOfType>>, Map<String, KGCoreResult<StructureOfType>>> result = Mono.zip(
+                    outcomes.collectList(),
+                    getStructures(firstBatch, space),
+                    getStructures(secondBatch, space)).block();
+            results = result != null ? result.getT1() : Collections.emptyList();
+            if (result != null) {
+                Stream.of(result.getT2(), result.getT3()).flatMap(m -> m.values().stream()).map(KGCoreResult::getData).filter(Objects::nonNull).forEach(structures::add);
+            }
+        } else {
+            results = outcomes.collectList().block();
         }
+        List<String> assignedTypes = new ArrayList<>();
+        Map<String, Throwable> failedTypes = new LinkedHashMap<>();
+        if (results != null) {
+            results.forEach(r -> {
+                if (r.failure == null) {
+                    assignedTypes.add(r.type);
+                } else {
+                    failedTypes.put(r.type, r.failure);
+                }
+            });
+        }
+        if (!assignedTypes.isEmpty()) {
+            schemaVersion.increment(space);
+        }
+        TypesAssignment assignment = new TypesAssignment(assignedTypes, failedTypes, structures.isEmpty() ? structures : getTypesWithNestedTypes(structures));
+        if (assignedTypes.isEmpty()) {
+            assignment.rethrowFailure();
+        }
+        return assignment;
+    }
+
+    private static Mono<List<String>> assignedTypes(Flux<TypeAssignmentOutcome> outcomes) {
+        return outcomes.filter(o -> o.failure == null).map(o -> o.type).collectList().cache();
+    }
+
+    private Mono<Map<String, KGCoreResult<StructureOfType>>> getStructures(Mono<List<String>> types, String space) {
+        Mono<Map<String, KGCoreResult<StructureOfType>>> request = spaceClient.getTypesByName(types, true, true, space);
+        return types.flatMap(t -> t.isEmpty() ? Mono.just(Collections.<String, KGCoreResult<StructureOfType>>emptyMap()) : request.defaultIfEmpty(Collections.emptyMap()));
     }
 
     // Exceptions are handled globally
     public void removeTypeFromSpace(String space, String type) {
         spaceClient.removeType(space, type);
+        schemaVersion.increment(space);
     }
 
-    public List<StructureOfType> getTypes(String space) {
-        List<StructureOfType> types = spaceClient.getSpaceTypes(space);
-        if (CollectionUtils.isEmpty(types)) {
-            return Collections.emptyList();
+    /**
+     * @return the serialized types of the space. Since the related types (e.g. the sources of incoming links) depend on
+     * the permissions of the user, the serialization is only shared between the users who can read the same spaces (as
+     * long as the schema of the space doesn't change) - for users who can't read the space, it is created on the fly.
+     */
+    public SerializedResponse getSerializedTypes(String space) {
+        if (!readableSpaces.canRead(space)) {
+            return serializeTypes(space);
         }
-        return getTypesWithNestedTypes(types);
+        SpaceKey key = schemaVersion.keyOf(space).withPermissions(readableSpaces.fingerprint());
+        SerializedResponse response = spaceTypesResponseCache.get(key, SerializedResponse.class);
+        if (response == null) {
+            response = serializeTypes(space);
+            spaceTypesResponseCache.put(key, response);
+        }
+        return response;
     }
 
-    public List<StructureOfType> getTypesByName(List<String> typeNames, String space) {
-        if (CollectionUtils.isEmpty(typeNames)) {
-            return Collections.emptyList();
-        }
-        Map<String, KGCoreResult<StructureOfType>> typesByName = spaceClient.getTypesByName(typeNames, true, true, space);
-        List<StructureOfType> types = typesByName.values().stream().map(KGCoreResult::getData).filter(Objects::nonNull).collect(Collectors.toList());
+    private SerializedResponse serializeTypes(String space) {
+        return SerializedResponse.of(objectMapper, smileObjectMapper, new KGCoreResult<List<StructureOfType>>().setData(getTypes(space)));
+    }
+
+    public List<StructureOfType> getTypes(String space) {
+        List<StructureOfType> types = spaceClient.getSpaceTypes(space);
         if (CollectionUtils.isEmpty(types)) {
             return Collections.emptyList();
         }
@@ -102,7 +248,13 @@ public class SpaceController {
     private List<StructureOfType> getTypesWithNestedTypes(List<StructureOfType> types) {
         List<StructureOfType> relatedTypes = new ArrayList<>(types);
         Map<String, StructureOfType> typesMap = relatedTypes.stream().collect(Collectors.toMap(StructureOfType::getName, v -> v));
-        getNestedTypes(typesMap, relatedTypes);
+        Map<String, StructureOfType> referencedTypes = new HashMap<>();
+        List<List<StructureOfType>> nestedTypesByLevel = resolveTypeClosure(types, typesMap, referencedTypes);
+        // The deepest level goes first so the nested fields of the nested types are in place before they are copied
+        for (int i = nestedTypesByLevel.size() - 1; i >= 0; i--) {
+            setNestedFields(typesMap, nestedTypesByLevel.get(i));
+        }
+        setNestedFields(typesMap, types);
         HashSet<String> spaceTypesName = new HashSet<>();
         relatedTypes.forEach(w -> spaceTypesName.add(w.getName()));
         typesMap.values().forEach(v -> {
@@ -113,10 +265,12 @@ public class SpaceController {
                 relatedTypes.add(v);
             }
         });
-        getTargetTypes(typesMap, relatedTypes);
-        getIncomingLinksTypes(relatedTypes, typesMap);
+        Map<String, StructureOfType> knownTypes = new HashMap<>(referencedTypes);
+        knownTypes.putAll(typesMap);
+        enrichTargetTypes(knownTypes, relatedTypes);
+        enrichIncomingLinksTypes(knownTypes, relatedTypes);
         relatedTypes.sort(Comparator.comparing(StructureOfType::getLabel));
-        enrichSpaceTypes(relatedTypes, typesMap);
+        enrichSpaceTypes(relatedTypes, knownTypes);
         return relatedTypes;
     }
 
@@ -128,32 +282,68 @@ public class SpaceController {
         spaceTypes.forEach(st -> Helpers.enrichFieldsTargetTypes(typesMap, st.getFields()));
     }
 
-    private void getIncomingLinksTypes(List<StructureOfType> spaceTypes, Map<String, StructureOfType> typesMap) {
-        List<String> typesFromIncomingLinks = new ArrayList<>();
-        spaceTypes.stream().filter(wt -> Objects.nonNull(wt.getIncomingLinks())).toList()
+    /**
+     * Resolves all types the given types depend on: the nested types (recursively, with their properties) go to the
+     * types map, the target types and the source types of incoming links (without properties) are collected in the
+     * referenced types. Every level of the closure is fetched with (at most) one batched request per kind which are
+     * executed concurrently.
+     *
+     * @return the nested types by nesting level
+     */
+    private List<List<StructureOfType>> resolveTypeClosure(List<StructureOfType> types, Map<String, StructureOfType> typesMap, Map<String, StructureOfType> referencedTypes) {
+        List<List<StructureOfType>> nestedTypesByLevel = new ArrayList<>();
+        Set<String> requestedReferencedTypes = new HashSet<>();
+        List<StructureOfType> frontier = types;
+        while (!frontier.isEmpty()) {
+            Set<String> nestedTypes = new HashSet<>();
+            Set<String> typesToReference = new HashSet<>();
+            frontier.forEach(type -> {
+                type.getFields().values().forEach(f -> {
+                    if (!CollectionUtils.isEmpty(f.getTargetTypesNames())) {
+                        (Helpers.isNestedField(f) ? nestedTypes : typesToReference).addAll(f.getTargetTypesNames());
+                    }
+                });
+                if (type.getIncomingLinks() != null) {
+                    type.getIncomingLinks().values().forEach(i -> i.getSourceTypes().forEach(source -> typesToReference.add(source.getType().getName())));
+                }
+            });
+            nestedTypes.removeAll(typesMap.keySet());
+            typesToReference.removeAll(typesMap.keySet());
+            typesToReference.removeAll(nestedTypes);
+            typesToReference.removeAll(requestedReferencedTypes);
+            requestedReferencedTypes.addAll(typesToReference);
+            Map<String, KGCoreResult<StructureOfType>> emptyResult = Collections.emptyMap();
+            Tuple2<Map<String, KGCoreResult<StructureOfType>>, Map<String, KGCoreResult<StructureOfType>>> result = Mono.zip(
+                    nestedTypes.isEmpty() ? Mono.just(emptyResult) : spaceClient.resolveTypesByName(nestedTypes, true),
+                    typesToReference.isEmpty() ? Mono.just(emptyResult) : spaceClient.resolveTypesByName(typesToReference, false)
+            ).block();
+            if (result == null) {
+                break;
+            }
+            referencedTypes.putAll(Helpers.getTypesByName(result.getT2()));
+            Map<String, StructureOfType> nestedTypesByName = Helpers.getTypesByName(result.getT1());
+            typesMap.putAll(nestedTypesByName);
+            frontier = new ArrayList<>(nestedTypesByName.values());
+            if (!frontier.isEmpty()) {
+                nestedTypesByLevel.add(frontier);
+            }
+        }
+        return nestedTypesByLevel;
+    }
+
+    private void enrichIncomingLinksTypes(Map<String, StructureOfType> knownTypes, List<StructureOfType> spaceTypes) {
+        spaceTypes.stream().filter(wt -> Objects.nonNull(wt.getIncomingLinks()))
                 .forEach(v -> v.getIncomingLinks().values()
                         .forEach(i -> i.getSourceTypes().forEach(s -> {
-                            if (!typesMap.containsKey(s.getType().getName())) {
-                                typesFromIncomingLinks.add(s.getType().getName());
-                            }
-                        }))
-                );
-        if (!CollectionUtils.isEmpty(typesFromIncomingLinks)) {
-            List<String> uniqueTypes = typesFromIncomingLinks.stream().distinct().toList();
-            Map<String, KGCoreResult<StructureOfType>> incomingLinksTypesByNameResult = spaceClient.getTypesByName(uniqueTypes, false);
-            Map<String, StructureOfType> incomingLinksTypes = Helpers.getTypesByName(incomingLinksTypesByNameResult);
-            typesMap.putAll(incomingLinksTypes);
-            spaceTypes.stream().filter(wt -> Objects.nonNull(wt.getIncomingLinks())).toList()
-                    .forEach(v -> v.getIncomingLinks().values()
-                            .forEach(i -> i.getSourceTypes().forEach(s -> {
-                                StructureOfType structureOfType = typesMap.get(s.getType().getName());
+                            StructureOfType structureOfType = knownTypes.get(s.getType().getName());
+                            if (structureOfType != null) {
                                 s.getType().setLabel(structureOfType.getLabel());
                                 s.getType().setColor(structureOfType.getColor());
                                 s.getType().setLabelField(structureOfType.getLabelField());
                                 s.getType().setDescription(structureOfType.getDescription());
-                            }))
-                    );
-        }
+                            }
+                        }))
+                );
     }
 
     private static String labelFromTypeName(String fullyQualifiedName) {
@@ -174,30 +364,11 @@ public class SpaceController {
         return null;
     }
 
-    private void getTargetTypes(Map<String, StructureOfType> typesMap, List<StructureOfType> types) {
-        List<String> typesToRetrieve = new ArrayList<>();
-        types.forEach(type -> type.getFields().values().forEach(f -> {
-            if (!CollectionUtils.isEmpty(f.getTargetTypesNames())) {
-                f.getTargetTypesNames().forEach(targetType -> {
-                    if (!typesMap.containsKey(targetType)) {
-                        typesToRetrieve.add(targetType);
-                    }
-                });
-            }
-        }));
-        Map<String, StructureOfType> targetTypesByName = new HashMap<>();
-        List<String> uniqueTypes = typesToRetrieve.stream().distinct().toList();
-        if (!CollectionUtils.isEmpty(uniqueTypes)) {
-            Map<String, KGCoreResult<StructureOfType>> targetTypesByNameResult = spaceClient.getTypesByName(uniqueTypes, false);
-            targetTypesByName.putAll(Helpers.getTypesByName(targetTypesByNameResult));
-        }
+    private void enrichTargetTypes(Map<String, StructureOfType> knownTypes, List<StructureOfType> types) {
         types.forEach(t -> t.getFields().values().forEach(f -> {
             if (!CollectionUtils.isEmpty(f.getTargetTypes())) {
                 f.getTargetTypes().forEach(targetType -> {
-                    StructureOfType structureOfType = typesMap.get(targetType.getName());
-                    if (structureOfType == null) {
-                        structureOfType = targetTypesByName.get(targetType.getName());
-                    }
+                    StructureOfType structureOfType = knownTypes.get(targetType.getName());
                     if(structureOfType!=null) {
                         targetType.setLabel(structureOfType.getLabel());
                         targetType.setColor(structureOfType.getColor());
@@ -212,25 +383,7 @@ public class SpaceController {
         }));
     }
 
-    private void getNestedTypes(Map<String, StructureOfType> typesMap, List<StructureOfType> types) {
-        List<String> typesToRetrieve = new ArrayList<>();
-        types.forEach(type -> type.getFields().values().forEach(f -> {
-            if (Helpers.isNestedField(f) && !CollectionUtils.isEmpty(f.getTargetTypesNames())) {
-                f.getTargetTypesNames().forEach(targetType -> {
-                    if (!typesMap.containsKey(targetType)) {
-                        typesToRetrieve.add(targetType);
-                    }
-                });
-            }
-        }));
-        List<String> uniqueTypes = typesToRetrieve.stream().distinct().toList();
-        if (!CollectionUtils.isEmpty(uniqueTypes)) {
-            Map<String, KGCoreResult<StructureOfType>> nestedTypesByNameResult = spaceClient.getTypesByName(uniqueTypes, true);
-            Map<String, StructureOfType> nestedTypesByName = Helpers.getTypesByName(nestedTypesByNameResult);
-            typesMap.putAll(nestedTypesByName);
-            List<StructureOfType> nestedTypes = new ArrayList<>(nestedTypesByName.values());
-            getNestedTypes(typesMap, nestedTypes);
-        }
+    private void setNestedFields(Map<String, StructureOfType> typesMap, List<StructureOfType> types) {
         types.forEach(t -> t.getFields().values().forEach(f -> {
             if (Helpers.isNestedField(f) && !CollectionUtils.isEmpty(f.getTargetTypesNames())) {
                 Map<String, StructureOfField> fields = new HashMap<>();
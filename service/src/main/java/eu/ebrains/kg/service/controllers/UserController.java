@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import eu.ebrains.kg.service.models.commons.UserSummary;
+import eu.ebrains.kg.service.services.UserClient;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+public class UserController {
+
+    private static final String USER_SEARCH_CACHE = "userSearch";
+
+    private final UserClient userClient;
+    private final Cache userSearchCache;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int searchResultLimit;
+    private final ConcurrentMap<String, CompletableFuture<List<UserSummary>>> searchesInFlight = new ConcurrentHashMap<>();
+
+    // The local filtering relies on assumptions about the identity service which are verified with its actual results
+    private volatile boolean searchResultLimitReached;
+    private volatile boolean matchingDiverges;
+
+    public UserController(UserClient userClient, CacheManager cacheManager, @Value("${kg.users.searchResultLimit:20}") int searchResultLimit) {
+        this.userClient = userClient;
+        this.userSearchCache = cacheManager.getCache(USER_SEARCH_CACHE);
+        this.searchResultLimit = searchResultLimit;
+    }
+
+    public static class UserSearchResult {
+        private final List<UserSummary> users;
+        private final boolean complete;
+
+        public UserSearchResult(List<UserSummary> users, boolean complete) {
+            this.users = users;
+            this.complete = complete;
+        }
+
+        public List<UserSummary> getUsers() {
+            return users;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Searches the users by the given (typeahead) search term. Results are cached by their normalized search term -
+     * if a shorter prefix of the search term has already returned a complete result (fewer users than the identity
+     * service returns at most), the result is filtered locally instead of asking the identity service again.
+     * Concurrent searches for the same term share the same upstream lookup.
+     * <p>
+     * The local filtering is only applied once the identity service has actually returned "kg.users.searchResultLimit"
+     * users (otherwise, its limit could be lower and smaller results could be truncated as well) and as long as all users
+     * it returns match the local {@link #filter(List, String) matching rule}.
+     */
+    public List<UserSummary> searchUsers(String search) {
+        String normalized = normalize(search);
+        if (StringUtils.isEmpty(normalized)) {
+            return userClient.getUsers(search);
+        }
+        UserSearchResult cached = userSearchCache.get(normalized, UserSearchResult.class);
+        if (cached != null) {
+            return cached.getUsers();
+        }
+        for (int i = normalized.length() - 1; i > 0 && searchResultLimitReached && !matchingDiverges; i--) {
+            UserSearchResult prefixResult = userSearchCache.get(normalized.substring(0, i), UserSearchResult.class);
+            if (prefixResult != null && prefixResult.isComplete()) {
+                List<UserSummary> filtered = filter(prefixResult.getUsers(), normalized);
+                userSearchCache.put(normalized, new UserSearchResult(filtered, true));
+                return filtered;
+            }
+        }
+        CompletableFuture<List<UserSummary>> lookup = new CompletableFuture<>();
+        CompletableFuture<List<UserSummary>> inFlight = searchesInFlight.putIfAbsent(normalized, lookup);
+        if (inFlight != null) {
+            return awaitSearch(inFlight);
+        }
+        try {
+            List<UserSummary> users = userClient.getUsers(normalized);
+            if (users != null) {
+                verifyAssumptions(users, normalized);
+                userSearchCache.put(normalized, new UserSearchResult(users, users.size() < searchResultLimit));
+            }
+            lookup.complete(users);
+            return users;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            searchesInFlight.remove(normalized, lookup);
+        }
+    }
+
+    private void verifyAssumptions(List<UserSummary> users, String normalizedSearch) {
+        if (users.size() >= searchResultLimit) {
+            searchResultLimitReached = true;
+        }
+        if (!matchingDiverges && filter(users, normalizedSearch).size() < users.size()) {
+            matchingDiverges = true;
+            logger.warn("The identity service matches users which are not matched locally for \"{}\" - the user search results are no longer filtered locally", normalizedSearch);
+        }
+    }
+
+    private static List<UserSummary> awaitSearch(CompletableFuture<List<UserSummary>> search) {
+        try {
+            return search.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static String normalize(String search) {
+        return search != null ? StringUtils.normalizeSpace(search).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Reproduces the matching of the identity service: every term of the search has to be contained in either the
+     * username or the name of the user. This rule has to mirror the one of the identity service - if it returns users
+     * which are not matched by it, the local filtering is disabled.
+     */
+    static List<UserSummary> filter(List<UserSummary> users, String normalizedSearch) {
+        List<String> terms = Arrays.asList(normalizedSearch.split(" "));
+        return users.stream().filter(u -> {
+            String username = u.getUsername() != null ? u.getUsername().toLowerCase(Locale.ROOT) : "";
+            String name = u.getName() != null ? u.getName().toLowerCase(Locale.ROOT) : "";
+            return terms.stream().allMatch(t -> username.contains(t) || name.contains(t));
+        }).toList();
+    }
+
+}
@@ -28,11 +28,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import eu.ebrains.kg.service.constants.EditorConstants;
 import eu.ebrains.kg.service.constants.SchemaFieldsConstants;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-public class StructureOfIncomingLink {
+public class StructureOfIncomingLink implements Serializable {
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public StructureOfIncomingLink(
             @JsonProperty(SchemaFieldsConstants.IDENTIFIER) String kgFullyQualifiedName,
@@ -53,7 +54,7 @@ public class StructureOfIncomingLink {
         return sourceTypes;
     }
 
-    public static class SourceType {
+    public static class SourceType implements Serializable {
         @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
         public SourceType( @JsonProperty(EditorConstants.VOCAB_TYPE) String kgType,
                            @JsonProperty(EditorConstants.VOCAB_SPACES) List<Map<String, String>> kgSpaces) {
@@ -29,13 +29,14 @@ import eu.ebrains.kg.service.constants.EditorConstants;
 import eu.ebrains.kg.service.constants.SchemaFieldsConstants;
 import org.springframework.util.CollectionUtils;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-public class StructureOfType {
+public class StructureOfType implements Serializable {
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public StructureOfType(
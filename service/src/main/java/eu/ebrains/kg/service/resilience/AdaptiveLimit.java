@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit which adapts to the latency of the calls (additive increase, multiplicative decrease): the
+ * limit shrinks by the backoff ratio whenever a call is dropped or slower than the latency threshold and grows by
+ * (about) one per round trip as long as the calls are fast and the limit is in use. Calls exceeding the limit are
+ * queued until a permit becomes available or their deadline has passed.
+ * Background calls may only use a share of the limit and the waiting interactive calls are resumed first - so the
+ * calls users are actively waiting for are not delayed by large background loads.
+ */
+public class AdaptiveLimit {
+
+    public enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdInNanos;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+    private final double backgroundShare;
+
+    private final Deque<Waiter> interactiveQueue = new ArrayDeque<>();
+    private final Deque<Waiter> backgroundQueue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private int inFlightInBackground;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio, int maxQueueSize, double backgroundShare) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdInNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+        this.backgroundShare = backgroundShare;
+    }
+
+    public class Permit {
+        private final long grantedAt = System.nanoTime();
+        private final boolean background;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(boolean background) {
+            this.background = background;
+        }
+
+        public void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveLimit.this.release(this, outcome, System.nanoTime() - grantedAt);
+            }
+        }
+    }
+
+    private static class Waiter {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int ABANDONED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final boolean background;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Permit permit;
+
+        private Waiter(MonoSink<Permit> sink, boolean background) {
+            this.sink = sink;
+            this.background = background;
+        }
+
+        private boolean abandon() {
+            return state.compareAndSet(WAITING, ABANDONED);
+        }
+    }
+
+    /**
+     * @return a permit as soon as the limit (or the share of it for background calls) allows - or a
+     * {@link LimitExceededException} if this is not the case within the given time. The permit has to be released once
+     * the call is done.
+     */
+    public Mono<Permit> acquire(Duration maxWait, boolean background) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, background);
+            synchronized (this) {
+                Deque<Waiter> queue = background ? backgroundQueue : interactiveQueue;
+                if (interactiveQueue.isEmpty() && queue.isEmpty() && canGrant(background)) {
+                    sink.success(grant(background));
+                    return;
+                }
+                if (interactiveQueue.size() + backgroundQueue.size() >= maxQueueSize) {
+                    sink.error(new LimitExceededException("Too many pending calls"));
+                    return;
+                }
+                queue.add(waiter);
+            }
+            Runnable expiry = () -> {
+                if (waiter.abandon()) {
+                    remove(waiter);
+                    sink.error(new LimitExceededException(String.format("No permit available within %d ms", maxWait.toMillis())));
+                }
+            };
+            sink.onDispose(Schedulers.parallel().schedule(expiry, maxWait.toMillis(), TimeUnit.MILLISECONDS));
+            sink.onCancel(() -> {
+                if (waiter.abandon()) {
+                    remove(waiter);
+                } else if (waiter.permit != null) {
+                    // The permit might have been granted but not delivered anymore
+                    waiter.permit.release(Outcome.IGNORED);
+                }
+            });
+        });
+    }
+
+    private boolean canGrant(boolean background) {
+        return inFlight < (int) limit && (!background || inFlightInBackground < Math.max(1, (int) (limit * backgroundShare)));
+    }
+
+    private Permit grant(boolean background) {
+        inFlight++;
+        if (background) {
+            inFlightInBackground++;
+        }
+        return new Permit(background);
+    }
+
+    private synchronized void remove(Waiter waiter) {
+        (waiter.background ? backgroundQueue : interactiveQueue).remove(waiter);
+    }
+
+    private void release(Permit permit, Outcome outcome, long latencyInNanos) {
+        Deque<Waiter> granted = new ArrayDeque<>();
+        synchronized (this) {
+            if (outcome != Outcome.IGNORED) {
+                if (outcome == Outcome.DROPPED || latencyInNanos > latencyThresholdInNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (inFlight * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            inFlight--;
+            if (permit.background) {
+                inFlightInBackground--;
+            }
+            resume(interactiveQueue, false, granted);
+            resume(backgroundQueue, true, granted);
+        }
+        // The waiting calls are resumed outside of the lock
+        granted.forEach(w -> w.sink.success(w.permit));
+    }
+
+    private void resume(Deque<Waiter> queue, boolean background, Deque<Waiter> granted) {
+        while (canGrant(background) && !queue.isEmpty()) {
+            Waiter waiter = queue.poll();
+            if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                waiter.permit = grant(background);
+                granted.add(waiter);
+            }
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getInFlightInBackground() {
+        return inFlightInBackground;
+    }
+
+    public synchronized int getQueued() {
+        return interactiveQueue.size() + backgroundQueue.size();
+    }
+}
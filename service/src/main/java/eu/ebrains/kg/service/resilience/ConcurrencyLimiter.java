@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the concurrent calls to the upstream services with an {@link AdaptiveLimit} per endpoint class (see
+ * {@link EndpointClasses}). This keeps the latency stable if KG core slows down instead of overloading it further.
+ * Calls of background requests (see {@link RequestLane}) only get a share of each limit. The limits and queues are
+ * exposed as metrics.
+ */
+@Component
+public class ConcurrencyLimiter implements ExchangeFilterFunction {
+
+    private static final Set<HttpStatus> OVERLOAD_STATUS = Set.of(HttpStatus.TOO_MANY_REQUESTS, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final EndpointClasses endpointClasses;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration latencyThreshold;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+    private final Duration queueTimeout;
+    private final double backgroundShare;
+
+    public ConcurrencyLimiter(MeterRegistry meterRegistry,
+                              EndpointClasses endpointClasses,
+                              @Value("${kg.limiter.enabled:true}") boolean enabled,
+                              @Value("${kg.limiter.initialLimit:20}") int initialLimit,
+                              @Value("${kg.limiter.minLimit:2}") int minLimit,
+                              @Value("${kg.limiter.maxLimit:200}") int maxLimit,
+                              @Value("${kg.limiter.latencyThreshold:5s}") Duration latencyThreshold,
+                              @Value("${kg.limiter.backoffRatio:0.9}") double backoffRatio,
+                              @Value("${kg.limiter.maxQueueSize:500}") int maxQueueSize,
+                              @Value("${kg.limiter.queueTimeout:5s}") Duration queueTimeout,
+                              @Value("${kg.limiter.backgroundShare:0.5}") double backgroundShare) {
+        this.meterRegistry = meterRegistry;
+        this.endpointClasses = endpointClasses;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = latencyThreshold;
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeout = queueTimeout;
+        this.backgroundShare = backgroundShare;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!enabled) {
+            return next.exchange(request);
+        }
+        String endpointClass = endpointClasses.of(request.url());
+        AdaptiveLimit limit = limits.computeIfAbsent(endpointClass, this::createLimit);
+        RequestLane lane = request.attribute(RequestLane.ATTRIBUTE).map(RequestLane.class::cast).orElse(RequestLane.BACKGROUND);
+        Timer.Sample waiting = Timer.start(meterRegistry);
+        return limit.acquire(queueTimeout, lane == RequestLane.BACKGROUND)
+                .doOnError(LimitExceededException.class, e -> Counter.builder("kg.upstream.concurrency.rejected").tag("endpoint", endpointClass).register(meterRegistry).increment())
+                .flatMap(permit -> {
+                    waiting.stop(Timer.builder("kg.upstream.concurrency.queue.wait").tag("endpoint", endpointClass).tag("lane", lane.name().toLowerCase()).register(meterRegistry));
+                    // Once the response has arrived, the permit is released with its body
+                    AtomicBoolean responded = new AtomicBoolean();
+                    return next.exchange(request)
+                            .doOnNext(response -> responded.set(true))
+                            .map(response -> releasedWithBody(response, permit))
+                            .doOnError(e -> permit.release(AdaptiveLimit.Outcome.DROPPED))
+                            .doFinally(signal -> {
+                                if (!responded.get()) {
+                                    permit.release(AdaptiveLimit.Outcome.IGNORED);
+                                }
+                            });
+                });
+    }
+
+    /**
+     * The call is in flight until its body has been received - so the time it takes to stream the body is part of the
+     * latency the limit adapts to as well.
+     */
+    private static ClientResponse releasedWithBody(ClientResponse response, AdaptiveLimit.Permit permit) {
+        AdaptiveLimit.Outcome outcome = OVERLOAD_STATUS.contains(response.statusCode()) ? AdaptiveLimit.Outcome.DROPPED : AdaptiveLimit.Outcome.SUCCESS;
+        return response.mutate().body(body -> body
+                .doOnComplete(() -> permit.release(outcome))
+                .doOnError(e -> permit.release(AdaptiveLimit.Outcome.DROPPED))
+                .doOnCancel(() -> permit.release(AdaptiveLimit.Outcome.IGNORED))).build();
+    }
+
+    private AdaptiveLimit createLimit(String endpointClass) {
+        AdaptiveLimit limit = new AdaptiveLimit(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, maxQueueSize, backgroundShare);
+        Gauge.builder("kg.upstream.concurrency.limit", limit, AdaptiveLimit::getLimit).tag("endpoint", endpointClass).register(meterRegistry);
+        Gauge.builder("kg.upstream.concurrency.inflight", limit, AdaptiveLimit::getInFlight).tag("endpoint", endpointClass).register(meterRegistry);
+        Gauge.builder("kg.upstream.concurrency.inflight.background", limit, AdaptiveLimit::getInFlightInBackground).tag("endpoint", endpointClass).register(meterRegistry);
+        Gauge.builder("kg.upstream.concurrency.queued", limit, AdaptiveLimit::getQueued).tag("endpoint", endpointClass).register(meterRegistry);
+        return limit;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+
+/**
+ * The point in time until which a request needs to be answered - all upstream calls of the request have to be
+ * completed by then.
+ */
+public record Deadline(long expiresAt) {
+
+    public static final String ATTRIBUTE = Deadline.class.getName();
+
+    /**
+     * The (remaining) time budget in milliseconds - accepted from the clients and forwarded to KG core.
+     */
+    public static final String HEADER = "X-Request-Timeout";
+
+    public static Deadline in(Duration duration) {
+        return new Deadline(System.currentTimeMillis() + duration.toMillis());
+    }
+
+    /**
+     * @return the deadline of the current request or null if there is none (e.g. outside of a request)
+     */
+    public static Deadline current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Deadline deadline ? deadline : null;
+    }
+
+    public Duration remaining() {
+        return Duration.ofMillis(Math.max(0, expiresAt - System.currentTimeMillis()));
+    }
+
+    public boolean isExpired() {
+        return remaining().isZero();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounds every upstream call by the deadline of its request (or by the configured timeout for calls outside of a
+ * request) and by the per call timeout. Calls of requests which have run out of time are not sent at all, the others
+ * forward their remaining budget to KG core and are cancelled once it is used up - so a hung upstream never holds a
+ * thread longer than the deadline. Since this filter is registered first, it bounds the whole call including the
+ * retrieval of the token of the service account.
+ */
+@Component
+public class DeadlineFilter implements ExchangeFilterFunction {
+
+    private final Duration callTimeout;
+    private final Duration backgroundTimeout;
+
+    public DeadlineFilter(@Value("${kg.deadline.perCall:20s}") Duration callTimeout, @Value("${kg.deadline.background:60s}") Duration backgroundTimeout) {
+        this.callTimeout = callTimeout;
+        this.backgroundTimeout = backgroundTimeout;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        Deadline deadline = request.attribute(Deadline.ATTRIBUTE).map(Deadline.class::cast).orElseGet(() -> Deadline.in(backgroundTimeout));
+        return Mono.defer(() -> {
+            Duration remaining = deadline.remaining();
+            if (remaining.isZero()) {
+                return Mono.error(new DeadlineExceededException(String.format("The deadline has passed before calling %s", request.url().getPath())));
+            }
+            Duration timeout = remaining.compareTo(callTimeout) < 0 ? remaining : callTimeout;
+            ClientRequest withBudget = ClientRequest.from(request).header(Deadline.HEADER, String.valueOf(timeout.toMillis())).build();
+            return next.exchange(withBudget)
+                    .timeout(timeout)
+                    .map(response -> response.mutate().body(body -> withinDeadline(body, deadline, request)).build())
+                    .onErrorMap(TimeoutException.class, e -> new DeadlineExceededException(String.format("No response from %s within %d ms", request.url().getPath(), timeout.toMillis())));
+        });
+    }
+
+    /**
+     * The body has to be completely received within the deadline too - a body which is still streaming once the deadline
+     * has passed is given up (no matter whether it stalls or just trickles in slowly).
+     */
+    private static Flux<DataBuffer> withinDeadline(Flux<DataBuffer> body, Deadline deadline, ClientRequest request) {
+        Mono<DataBuffer> expiry = Mono.delay(deadline.remaining()).then(Mono.error(() -> new DeadlineExceededException(String.format("The response of %s was not received before the deadline", request.url().getPath()))));
+        return body.takeUntilOther(expiry);
+    }
+}
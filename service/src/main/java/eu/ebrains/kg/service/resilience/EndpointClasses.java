@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+
+/**
+ * Groups the upstream calls by their endpoint class: the first path segment of the KG core API (e.g. "instances" or
+ * "typesByName") - calls to other services are grouped by their host.
+ */
+@Component
+public class EndpointClasses {
+
+    private final String kgCoreApi;
+
+    public EndpointClasses(@Value("${kgcore.endpoint}") String kgCoreEndpoint, @Value("${kgcore.apiVersion}") String apiVersion) {
+        this.kgCoreApi = String.format("%s/%s/", kgCoreEndpoint, apiVersion);
+    }
+
+    public String of(URI uri) {
+        String url = uri.toString();
+        if (url.startsWith(kgCoreApi)) {
+            String path = url.substring(kgCoreApi.length());
+            int end = path.length();
+            for (char separator : new char[]{'/', '?', '#'}) {
+                int index = path.indexOf(separator);
+                if (index > -1 && index < end) {
+                    end = index;
+                }
+            }
+            return path.substring(0, end);
+        }
+        return uri.getHost() != null ? uri.getHost() : "unknown";
+    }
+}
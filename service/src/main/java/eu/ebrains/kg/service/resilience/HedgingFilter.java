@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Hedges the configured idempotent reads: if the response doesn't arrive within the configured percentile of the
+ * recent latencies of the endpoint class, a second attempt is sent and whichever response arrives first is used (the
+ * other attempt is cancelled). The hedges are limited by a budget (a share of the calls) to cap the additional load.
+ * The latencies are recorded once per call from its first attempt - if that one is cancelled since the hedge was faster,
+ * the time until then is recorded as a (censored) sample so slow calls keep contributing to the percentile.
+ */
+@Component
+public class HedgingFilter implements ExchangeFilterFunction {
+
+    private static final double MAX_BUDGET = 10;
+
+    private final EndpointClasses endpointClasses;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Set<String> hedgedCalls;
+    private final double percentile;
+    private final Duration minDelay;
+    private final double budgetRatio;
+    private final Map<String, LatencyPercentile> latencies = new ConcurrentHashMap<>();
+
+    private double budget;
+
+    public HedgingFilter(EndpointClasses endpointClasses,
+                         MeterRegistry meterRegistry,
+                         @Value("${kg.hedging.enabled:false}") boolean enabled,
+                         @Value("${kg.hedging.calls:GET:instances,POST:instancesByIds,POST:typesByName}") List<String> hedgedCalls,
+                         @Value("${kg.hedging.percentile:0.95}") double percentile,
+                         @Value("${kg.hedging.minDelay:50ms}") Duration minDelay,
+                         @Value("${kg.hedging.budget:0.05}") double budgetRatio) {
+        this.endpointClasses = endpointClasses;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.hedgedCalls = hedgedCalls.stream().map(String::trim).collect(Collectors.toSet());
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.budgetRatio = budgetRatio;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String endpointClass = endpointClasses.of(request.url());
+        if (!enabled || !hedgedCalls.contains(String.format("%s:%s", request.method().name(), endpointClass))) {
+            return next.exchange(request);
+        }
+        LatencyPercentile latency = latencies.computeIfAbsent(endpointClass, k -> new LatencyPercentile(512, percentile));
+        long threshold = latency.get();
+        earnBudget();
+        Mono<ClientResponse> attempt = timed(next.exchange(request), latency);
+        if (threshold < 0) {
+            // Not enough samples yet
+            return attempt;
+        }
+        Mono<ClientResponse> hedge = Mono.delay(Duration.ofMillis(Math.max(threshold, minDelay.toMillis())))
+                .flatMap(t -> {
+                    if (!spendBudget()) {
+                        return Mono.never();
+                    }
+                    Counter.builder("kg.upstream.hedged").tag("endpoint", endpointClass).register(meterRegistry).increment();
+                    return next.exchange(request);
+                });
+        return Mono.firstWithSignal(attempt, hedge);
+    }
+
+    private static Mono<ClientResponse> timed(Mono<ClientResponse> exchange, LatencyPercentile latency) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return exchange.doFinally(signal -> {
+                if (signal != SignalType.ON_ERROR) {
+                    latency.record(Duration.ofNanos(System.nanoTime() - start).toMillis());
+                }
+            });
+        });
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget >= 1) {
+            budget--;
+            return true;
+        }
+        return false;
+    }
+}
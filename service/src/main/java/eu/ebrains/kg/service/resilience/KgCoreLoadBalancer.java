@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Distributes the calls to KG core across several nodes: the calls are built against "kgcore.endpoint" and are routed
+ * here to the node with the least outstanding requests - reads to the read endpoints, everything else to the write
+ * endpoints (both default to "kgcore.endpoint"). Nodes which fail repeatedly (with connection errors or 502, 503,
+ * 504) are ejected for a while. If all nodes are ejected, the one coming back first is used anyway.
+ */
+@Component
+public class KgCoreLoadBalancer implements ExchangeFilterFunction {
+
+    private static final Set<HttpStatus> FAILURE_STATUS = Set.of(HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+    private static final Set<HttpMethod> READ_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final String kgCoreEndpoint;
+    private final EndpointClasses endpointClasses;
+    private final Set<String> readPosts;
+    private final List<KgCoreNode> readNodes;
+    private final List<KgCoreNode> writeNodes;
+    private final Collection<KgCoreNode> nodes;
+
+    public KgCoreLoadBalancer(@Value("${kgcore.endpoint}") String kgCoreEndpoint,
+                              @Value("${kgcore.readEndpoints:}") List<String> readEndpoints,
+                              @Value("${kgcore.writeEndpoints:}") List<String> writeEndpoints,
+                              @Value("${kg.loadbalancer.readPosts:instancesByIds,typesByName}") List<String> readPosts,
+                              @Value("${kg.loadbalancer.failureThreshold:3}") int failureThreshold,
+                              @Value("${kg.loadbalancer.ejectionTime:30s}") Duration ejectionTime,
+                              @Value("${kg.loadbalancer.maxEjectionTime:5m}") Duration maxEjectionTime,
+                              EndpointClasses endpointClasses,
+                              MeterRegistry meterRegistry) {
+        this.kgCoreEndpoint = kgCoreEndpoint;
+        this.endpointClasses = endpointClasses;
+        this.readPosts = new HashSet<>(readPosts);
+        Map<String, KgCoreNode> nodesByEndpoint = new LinkedHashMap<>();
+        this.readNodes = nodes(readEndpoints, nodesByEndpoint, failureThreshold, ejectionTime, maxEjectionTime);
+        this.writeNodes = nodes(writeEndpoints, nodesByEndpoint, failureThreshold, ejectionTime, maxEjectionTime);
+        this.nodes = nodesByEndpoint.values();
+        this.nodes.forEach(node -> {
+            Gauge.builder("kg.upstream.node.outstanding", node, KgCoreNode::getOutstanding).tag("node", node.getEndpoint()).register(meterRegistry);
+            Gauge.builder("kg.upstream.node.ejected", node, n -> n.isEjected() ? 1 : 0).tag("node", node.getEndpoint()).register(meterRegistry);
+        });
+    }
+
+    private List<KgCoreNode> nodes(List<String> endpoints, Map<String, KgCoreNode> nodesByEndpoint, int failureThreshold, Duration ejectionTime, Duration maxEjectionTime) {
+        List<String> configured = endpoints.stream().map(e -> StringUtils.removeEnd(e.trim(), "/")).filter(StringUtils::isNotBlank).distinct().toList();
+        // The same node is shared by reads and writes (so both know about its health and its load)
+        return (configured.isEmpty() ? List.of(kgCoreEndpoint) : configured).stream()
+                .map(e -> nodesByEndpoint.computeIfAbsent(e, k -> new KgCoreNode(k, failureThreshold, ejectionTime.toMillis(), maxEjectionTime.toMillis())))
+                .toList();
+    }
+
+    /**
+     * @return true if the given URI points to one of the KG core nodes
+     */
+    public boolean isKgCore(URI uri) {
+        String url = uri.toString();
+        return url.startsWith(kgCoreEndpoint) || nodes.stream().anyMatch(n -> url.startsWith(n.getEndpoint()));
+    }
+
+    private boolean isRead(ClientRequest request) {
+        return READ_METHODS.contains(request.method()) || (request.method() == HttpMethod.POST && readPosts.contains(endpointClasses.of(request.url())));
+    }
+
+    static KgCoreNode select(List<KgCoreNode> candidates) {
+        List<KgCoreNode> available = candidates.stream().filter(n -> !n.isEjected()).toList();
+        if (available.isEmpty()) {
+            return candidates.stream().min(Comparator.comparingLong(KgCoreNode::getEjectedUntil)).orElseThrow();
+        }
+        int leastOutstanding = available.stream().mapToInt(KgCoreNode::getOutstanding).min().orElse(0);
+        // Ties are broken randomly so the load is spread even if there is little of it
+        List<KgCoreNode> least = available.stream().filter(n -> n.getOutstanding() == leastOutstanding).toList();
+        return least.get(ThreadLocalRandom.current().nextInt(least.size()));
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String url = request.url().toString();
+        if (!url.startsWith(kgCoreEndpoint) || nodes.size() == 1 && nodes.iterator().next().getEndpoint().equals(kgCoreEndpoint)) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            KgCoreNode node = select(isRead(request) ? readNodes : writeNodes);
+            ClientRequest routed = ClientRequest.from(request).url(URI.create(node.getEndpoint() + url.substring(kgCoreEndpoint.length()))).build();
+            AtomicBoolean responded = new AtomicBoolean();
+            node.start();
+            return next.exchange(routed)
+                    .map(response -> {
+                        responded.set(true);
+                        if (FAILURE_STATUS.contains(response.statusCode())) {
+                            node.failed();
+                        } else {
+                            node.succeeded();
+                        }
+                        // The request is outstanding until its body has been received
+                        AtomicBoolean finished = new AtomicBoolean();
+                        return response.mutate().body(body -> body.doFinally(signal -> {
+                            if (finished.compareAndSet(false, true)) {
+                                node.finished();
+                            }
+                        })).build();
+                    })
+                    .doOnError(e -> node.failed())
+                    .doFinally(signal -> {
+                        if (!responded.get()) {
+                            node.finished();
+                        }
+                    });
+        });
+    }
+}
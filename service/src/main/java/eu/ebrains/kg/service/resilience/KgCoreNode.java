@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A KG core node with its outstanding requests and its health: a node failing repeatedly is ejected for a while - for
+ * an increasing time if it keeps failing once it is back. A successful response resets the ejection time. A request is
+ * outstanding from its start until it has finished (i.e. until its body has been received), independently of its
+ * outcome which is known as soon as the response arrives.
+ */
+class KgCoreNode {
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long baseEjectionTime;
+    private final long maxEjectionTime;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedUntil;
+
+    KgCoreNode(String endpoint, int failureThreshold, long baseEjectionTime, long maxEjectionTime) {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.baseEjectionTime = baseEjectionTime;
+        this.maxEjectionTime = maxEjectionTime;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    void finished() {
+        outstanding.decrementAndGet();
+    }
+
+    synchronized void succeeded() {
+        consecutiveFailures = 0;
+        ejections = 0;
+    }
+
+    synchronized void failed() {
+        consecutiveFailures++;
+        if (consecutiveFailures >= failureThreshold && !isEjected()) {
+            ejectedUntil = System.currentTimeMillis() + Math.min(maxEjectionTime, baseEjectionTime << Math.min(ejections, 16));
+            ejections++;
+            consecutiveFailures = 0;
+        }
+    }
+
+    synchronized boolean isEjected() {
+        return System.currentTimeMillis() < ejectedUntil;
+    }
+
+    synchronized long getEjectedUntil() {
+        return ejectedUntil;
+    }
+}
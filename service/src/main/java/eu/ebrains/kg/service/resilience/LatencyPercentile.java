@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Tracks a percentile of the most recent latencies (in a ring buffer of fixed size). The percentile is recalculated
+ * every few samples only.
+ */
+class LatencyPercentile {
+
+    private static final int RECALCULATION_INTERVAL = 32;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int count;
+    private long value = -1;
+
+    LatencyPercentile(int size, double percentile) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long latencyInMs) {
+        samples[next] = latencyInMs;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (count >= RECALCULATION_INTERVAL && (value < 0 || next % RECALCULATION_INTERVAL == 0)) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            value = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    /**
+     * @return the percentile of the recent latencies (in ms) or -1 if there are not enough samples yet
+     */
+    synchronized long get() {
+        return value;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Sets the deadline of the incoming requests at their arrival: clients can shorten the default deadline by the time
+ * they are willing to wait (in milliseconds) - a longer time is capped at the default deadline.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private final Duration defaultTimeout;
+
+    public RequestDeadlineFilter(@Value("${kg.deadline.default:30s}") Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    Duration timeoutOf(HttpServletRequest request) {
+        String requested = request.getHeader(Deadline.HEADER);
+        if (requested != null) {
+            try {
+                long timeout = Long.parseLong(requested.trim());
+                if (timeout > 0) {
+                    return Duration.ofMillis(Math.min(timeout, defaultTimeout.toMillis()));
+                }
+            } catch (NumberFormatException e) {
+                // We fall back to the default
+            }
+        }
+        return defaultTimeout;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        request.setAttribute(Deadline.ATTRIBUTE, Deadline.in(timeoutOf(request)));
+        filterChain.doFilter(request, response);
+    }
+}
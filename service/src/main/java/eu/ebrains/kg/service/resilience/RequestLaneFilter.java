@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns the incoming requests to their {@link RequestLane} by their path - the "X-Request-Priority: background" header
+ * can move further requests into the background lane, but never moves a background path into the interactive lane.
+ * The number of concurrently executed background requests is bounded. Since a waiting request occupies a thread of the
+ * container, a background request which doesn't get a slot right away (i.e. within a very short wait) is rejected (with
+ * 503 and a Retry-After) so it never occupies the threads needed by interactive requests. The UI retries these
+ * requests after the given delay.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class RequestLaneFilter extends OncePerRequestFilter {
+
+    public static final String PRIORITY_HEADER = "X-Request-Priority";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<String> backgroundPaths;
+    private final Semaphore backgroundSlots;
+    private final Duration backgroundQueueTimeout;
+
+    public RequestLaneFilter(@Value("${kg.lanes.backgroundPaths:/api/instancesBulk/**,/api/releases/status}") List<String> backgroundPaths, @Value("${kg.lanes.backgroundConcurrency:16}") int backgroundConcurrency, @Value("${kg.lanes.backgroundQueueTimeout:100ms}") Duration backgroundQueueTimeout) {
+        this.backgroundPaths = backgroundPaths.stream().map(String::trim).filter(p -> !p.isEmpty()).toList();
+        this.backgroundSlots = new Semaphore(backgroundConcurrency, true);
+        this.backgroundQueueTimeout = backgroundQueueTimeout;
+    }
+
+    RequestLane classify(HttpServletRequest request) {
+        if ("background".equalsIgnoreCase(request.getHeader(PRIORITY_HEADER))) {
+            return RequestLane.BACKGROUND;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return backgroundPaths.stream().anyMatch(p -> pathMatcher.match(p, path)) ? RequestLane.BACKGROUND : RequestLane.INTERACTIVE;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RequestLane lane = classify(request);
+        request.setAttribute(RequestLane.ATTRIBUTE, lane);
+        if (lane == RequestLane.INTERACTIVE) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean acquired;
+        try {
+            // There is no point in waiting beyond the deadline of the request
+            Deadline deadline = (Deadline) request.getAttribute(Deadline.ATTRIBUTE);
+            long timeout = deadline != null ? Math.min(backgroundQueueTimeout.toMillis(), deadline.remaining().toMillis()) : backgroundQueueTimeout.toMillis();
+            acquired = backgroundSlots.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            backgroundSlots.release();
+        }
+    }
+}
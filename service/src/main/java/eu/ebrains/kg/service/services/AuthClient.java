@@ -25,7 +25,6 @@ package eu.ebrains.kg.service.services;
 
 import eu.ebrains.kg.service.models.KGCoreResult;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 
@@ -40,10 +39,9 @@ public class AuthClient {
         this.kg = kg;
     }
 
-    @Cacheable(value = "authEndpoint", unless = "#result == null")
     public String getEndpoint() {
         try {
-            KGCoreResult.Single result = kg.client(true).get().uri(kg.url("users/authorization"))
+            KGCoreResult.Single result = kg.serviceAccountClient().get().uri(kg.url("users/authorization"))
                     .retrieve()
                     .bodyToMono(KGCoreResult.Single.class)
                     .block();
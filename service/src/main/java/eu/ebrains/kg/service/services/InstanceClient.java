@@ -33,6 +33,8 @@ import eu.ebrains.kg.service.models.commons.Permissions;
 import eu.ebrains.kg.service.models.commons.UserSummary;
 import eu.ebrains.kg.service.models.instance.*;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.reactive.function.BodyInserters;
@@ -43,17 +45,20 @@ import java.util.*;
 public class InstanceClient {
 
     private static final int INCOMING_LINKS_PAGE_SIZE = 10;
+    private static final String INVITED_USERS_CACHE = "invitedUsers";
 
     private final IdController idController;
     private final ObjectMapper objectMapper;
     private final ServiceCall kg;
     private final UserClient users;
+    private final Cache invitedUsersCache;
 
-    public InstanceClient(IdController idController, ServiceCall kg, ObjectMapper jacksonObjectMapper, UserClient users) {
+    public InstanceClient(IdController idController, ServiceCall kg, ObjectMapper jacksonObjectMapper, UserClient users, CacheManager cacheManager) {
         this.idController = idController;
         this.kg = kg;
         this.objectMapper = jacksonObjectMapper;
         this.users = users;
+        this.invitedUsersCache = cacheManager.getCache(INVITED_USERS_CACHE);
     }
 
     public <T extends HasError> Map<String, ResultWithOriginalMap<T>> getInstances(List<String> ids,
@@ -192,6 +197,19 @@ public class InstanceClient {
         return buildResultWithOriginalMap(response, InstanceFull.class);
     }
 
+    /**
+     * @return the metadata of the instance (e.g. its revision, its space and the permissions of the user) without its
+     * payload - which is enough to revalidate a previously delivered document.
+     */
+    public Map<String, Object> getInstanceMetadata(String id) {
+        String relativeUrl = String.format("instances/%s?stage=IN_PROGRESS&returnPermissions=true&returnPayload=false&returnEmbedded=false", id);
+        KGCoreResult.Single response = kg.client(true).get().uri(kg.url(relativeUrl))
+                .retrieve()
+                .bodyToMono(KGCoreResult.Single.class)
+                .block();
+        return response != null ? response.getData() : null;
+    }
+
     public Map<String, Object> getRawInstance(String id) {
         String relativeUrl = String.format("instances/%s?stage=IN_PROGRESS&returnPermissions=true&returnEmbedded=true", id);
         Map<String, Object> result = kg.client(true).get().uri(kg.url(relativeUrl))
@@ -279,13 +297,37 @@ public class InstanceClient {
                 .retrieve()
                 .bodyToMono(UserIds.class)
                 .block();
-        if(userIds!=null && !CollectionUtils.isEmpty(userIds.getData())){
-            final List<UserSummary> userSummaries = userIds.getData().stream().map(users::getUserById).filter(Objects::nonNull).toList();
+        List<String> invitedUserIds = userIds != null && userIds.getData() != null ? new ArrayList<>(userIds.getData()) : new ArrayList<>();
+        invitedUsersCache.put(id, invitedUserIds);
+        return toInvitedUsersResult(invitedUserIds);
+    }
+
+    private KGCoreResult<List<UserSummary>> toInvitedUsersResult(List<String> invitedUserIds) {
+        if(!CollectionUtils.isEmpty(invitedUserIds)){
+            final List<UserSummary> userSummaries = users.getUsersByIds(invitedUserIds);
             return new KGCoreResult<List<UserSummary>>().setData(userSummaries);
         }
         return null;
     }
 
+    /**
+     * Applies a successful invitation change to the cached list of invited users (if any) to avoid re-fetching it.
+     */
+    private KGCoreResult<List<UserSummary>> updateInvitedUsers(String id, String userId, boolean invited) {
+        List<?> cached = invitedUsersCache.get(id, List.class);
+        if (cached == null) {
+            return getInvitedUsers(id);
+        }
+        List<String> invitedUserIds = new ArrayList<>();
+        cached.forEach(u -> invitedUserIds.add((String) u));
+        invitedUserIds.remove(userId);
+        if (invited) {
+            invitedUserIds.add(userId);
+        }
+        invitedUsersCache.put(id, invitedUserIds);
+        return toInvitedUsersResult(invitedUserIds);
+    }
+
     public void moveInstance(String id, String space) {
         String relativeUrl = String.format("instances/%s/spaces/%s", id, space);
         kg.client(true).put().uri(kg.url(relativeUrl))
@@ -294,20 +336,22 @@ public class InstanceClient {
                 .block();
     }
 
-    public void deleteInvitedUser(String id, String userId) {
+    public KGCoreResult<List<UserSummary>> deleteInvitedUser(String id, String userId) {
         String relativeUrl = String.format("instances/%s/invitedUsers/%s", id, userId);
         kg.client(true).delete().uri(kg.url(relativeUrl))
                 .retrieve()
                 .bodyToMono(Void.class)
                 .block();
+        return updateInvitedUsers(id, userId, false);
     }
 
-    public void addInvitation(String id, String userId) {
+    public KGCoreResult<List<UserSummary>> addInvitation(String id, String userId) {
         String relativeUrl = String.format("instances/%s/invitedUsers/%s", id, userId);
         kg.client(true).put().uri(kg.url(relativeUrl))
                 .retrieve()
                 .bodyToMono(Void.class)
                 .block();
+        return updateInvitedUsers(id, userId, true);
     }
 
 }
@@ -34,19 +34,25 @@ public class ServiceCall {
 
     private final WebClient userWithServiceAccountWebClient;
     private final WebClient userOnlyWebClient;
+    private final WebClient serviceAccountOnlyWebClient;
 
     private final String kgCoreEndpoint;
 
     private final String apiVersion;
 
 
-    public ServiceCall(@Qualifier("asUserWithServiceAccount") WebClient userWithServiceAccountWebClient, @Qualifier("asUserOnly") WebClient userOnlyWebClient, @Value("${kgcore.endpoint}") String kgCoreEndpoint, @Value("${kgcore.apiVersion}") String apiVersion) {
+    public ServiceCall(@Qualifier("asUserWithServiceAccount") WebClient userWithServiceAccountWebClient, @Qualifier("asUserOnly") WebClient userOnlyWebClient, @Qualifier("asServiceAccountOnly") WebClient serviceAccountOnlyWebClient, @Value("${kgcore.endpoint}") String kgCoreEndpoint, @Value("${kgcore.apiVersion}") String apiVersion) {
         this.userWithServiceAccountWebClient = userWithServiceAccountWebClient;
         this.userOnlyWebClient = userOnlyWebClient;
+        this.serviceAccountOnlyWebClient = serviceAccountOnlyWebClient;
         this.kgCoreEndpoint = kgCoreEndpoint;
         this.apiVersion = apiVersion;
     }
 
+    /**
+     * @return the URL of the given resource of KG core - the calls are routed to the actual KG core nodes by the
+     * {@link eu.ebrains.kg.service.resilience.KgCoreLoadBalancer}.
+     */
     public String url(String relativeUri){
         return String.format("%s/%s/%s", kgCoreEndpoint, apiVersion, relativeUri);
     }
@@ -54,4 +60,12 @@ public class ServiceCall {
     public WebClient client(boolean useServiceAccount) {
         return useServiceAccount?userWithServiceAccountWebClient:userOnlyWebClient;
     }
+
+    /**
+     * @return a client which is authenticated by the service account only (and which can therefore be used outside of
+     * a request, e.g. in background tasks)
+     */
+    public WebClient serviceAccountClient() {
+        return serviceAccountOnlyWebClient;
+    }
 }
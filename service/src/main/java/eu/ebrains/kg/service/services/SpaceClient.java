@@ -24,35 +24,60 @@
 package eu.ebrains.kg.service.services;
 
 import com.nimbusds.oauth2.sdk.util.CollectionUtils;
+import eu.ebrains.kg.service.caching.MissingEntries;
+import eu.ebrains.kg.service.caching.StaleWhileRevalidate;
+import eu.ebrains.kg.service.caching.TimestampedValue;
+import eu.ebrains.kg.service.helpers.Helpers;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.user.Space;
 import eu.ebrains.kg.service.models.type.StructureOfType;
+import org.apache.commons.lang3.SerializationUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 public class SpaceClient {
 
+    private static final String ALL_TYPES_CACHE = "allTypes";
+    private static final String TYPE_STRUCTURE_CACHE = "typeStructure";
+
     private final ServiceCall kg;
+    private final Cache allTypesCache;
+    private final Cache typeStructureCache;
+    private final StaleWhileRevalidate staleWhileRevalidate;
+    private final MissingEntries missingEntries;
 
-    public SpaceClient(ServiceCall kg) {
+    public SpaceClient(ServiceCall kg, CacheManager cacheManager, StaleWhileRevalidate staleWhileRevalidate, MissingEntries missingEntries) {
         this.kg = kg;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.missingEntries = missingEntries;
+        this.allTypesCache = cacheManager.getCache(ALL_TYPES_CACHE);
+        this.typeStructureCache = cacheManager.getCache(TYPE_STRUCTURE_CACHE);
     }
 
     private static class SpaceResultFromKG extends KGCoreResult<Space> {}
     private static class SpacesResultFromKG extends KGCoreResult<List<Space>> {}
 
     public List<Space> getSpaces() {
+        return getSpacesMono().block();
+    }
+
+    public Mono<List<Space>> getSpacesMono() {
         String relativeUrl = "spaces?permissions=true";
-        KGCoreResult<List<Space>> response = kg.client(true).get().uri(kg.url(relativeUrl))
+        return kg.client(true).get().uri(kg.url(relativeUrl))
                 .retrieve()
                 .bodyToMono(SpacesResultFromKG.class)
-                .block();
-        return response != null ? response.getData() : null;
+                .mapNotNull(KGCoreResult::getData);
     }
 
     public Space getSpace(String space) {
@@ -72,12 +97,11 @@ public class SpaceClient {
                 .block();
     }
 
-    public void setAssignType(String space, String type) {
+    public Mono<Void> assignType(String space, String type) {
         String relativeUrl = String.format("spaces/%s/types?type=%s", space, type);
-        kg.client(false).put().uri(kg.url(relativeUrl))
+        return kg.client(false).put().uri(kg.url(relativeUrl))
                 .retrieve()
-                .bodyToMono(Void.class)
-                .block();
+                .bodyToMono(Void.class);
     }
 
     public void removeType(String space, String type) {
@@ -91,47 +115,114 @@ public class SpaceClient {
     private static class StructureTypeResultFromKG extends KGCoreResult<List<StructureOfType>> {
     }
 
-    private List<StructureOfType> getSpaceTypes(String space, boolean withProperties, boolean withIncomingLinks) {
-        String relativeUrl = String.format("types?stage=IN_PROGRESS&space=%s&withProperties=%s&withIncomingLinks=%s", space, withProperties, withIncomingLinks);
-        StructureTypeResultFromKG response = kg.client(true).get().uri(kg.url(relativeUrl))
+    private Mono<List<StructureOfType>> getTypes(String relativeUrl) {
+        return getTypes(kg.client(true), relativeUrl);
+    }
+
+    private Mono<List<StructureOfType>> getTypes(WebClient client, String relativeUrl) {
+        return client.get().uri(kg.url(relativeUrl))
                 .retrieve()
                 .bodyToMono(StructureTypeResultFromKG.class)
-                .block();
-        return response != null ? response.getData() : null;
+                .mapNotNull(KGCoreResult::getData);
+    }
+
+    private Mono<List<StructureOfType>> getSpaceTypesMono(String space, boolean withProperties, boolean withIncomingLinks) {
+        String relativeUrl = String.format("types?stage=IN_PROGRESS&space=%s&withProperties=%s&withIncomingLinks=%s", space, withProperties, withIncomingLinks);
+        return getTypes(relativeUrl);
     }
 
     public List<StructureOfType> getSpaceTypes(String space) {
-        return getSpaceTypes(space, true, true);
+        return getSpaceTypesMono(space, true, true).block();
     }
 
-    public List<StructureOfType> getSpaceAvailableTypes(String space) {
-        String relativeUrl = "types?stage=IN_PROGRESS&withProperties=false&withIncomingLinks=false";
-        StructureTypeResultFromKG response = kg.client(true).get().uri(kg.url(relativeUrl))
-                .retrieve()
-                .bodyToMono(StructureTypeResultFromKG.class)
-                .block();
-        if (response != null) {
-            List<StructureOfType> all = response.getData();
-            if (CollectionUtils.isEmpty(all)) {
-                return Collections.emptyList();
-            }
-            all.removeIf(t -> t.getEmbeddedOnly() != null && t.getEmbeddedOnly());
-            if (CollectionUtils.isEmpty(all)) {
-                return Collections.emptyList();
-            }
-            all.sort((o1, o2) -> o1.getLabel().compareToIgnoreCase(o2.getLabel()));
-            List<StructureOfType> typesToExclude = getSpaceTypes(space, false, false);
-            if (!CollectionUtils.isEmpty(typesToExclude)) {
-                typesToExclude.removeIf(t -> t.getEmbeddedOnly() != null && t.getEmbeddedOnly());
+    /**
+     * @return all types which can be assigned to a space (no embedded ones) sorted by their label. The list is shared
+     * across users and spaces and is therefore not modifiable.
+     */
+    public Mono<List<StructureOfType>> getAllAssignableTypes() {
+        return staleWhileRevalidate.get(allTypesCache, SimpleKey.EMPTY, () -> fetchAllAssignableTypes(kg.client(true)));
+    }
+
+    private Mono<List<StructureOfType>> fetchAllAssignableTypes(WebClient client) {
+        return getTypes(client, "types?stage=IN_PROGRESS&withProperties=false&withIncomingLinks=false").map(all -> all.stream()
+                .filter(t -> t.getEmbeddedOnly() == null || !t.getEmbeddedOnly())
+                .sorted((o1, o2) -> o1.getLabel().compareToIgnoreCase(o2.getLabel()))
+                .toList());
+    }
+
+    /**
+     * Loads the types which can be assigned to a space into the cache with the service account - it is therefore meant
+     * to be used outside of a request (e.g. while warming up the caches).
+     */
+    public Mono<List<StructureOfType>> preloadAllAssignableTypes() {
+        return fetchAllAssignableTypes(kg.serviceAccountClient())
+                .doOnNext(types -> staleWhileRevalidate.put(allTypesCache, SimpleKey.EMPTY, types));
+    }
+
+    /**
+     * Loads the (space independent) structures of the type closure of the given space into the cache with the service
+     * account - it is therefore meant to be used outside of a request (e.g. while warming up the caches). The closure is
+     * walked the same way as for the types of a space: the nested types level by level with their properties, the
+     * target types and the source types of incoming links without.
+     *
+     * @return the number of loaded type structures
+     */
+    public Mono<Integer> preloadTypeClosure(String space) {
+        WebClient client = kg.serviceAccountClient();
+        String relativeUrl = String.format("types?stage=IN_PROGRESS&space=%s&withProperties=true&withIncomingLinks=true", space);
+        return getTypes(client, relativeUrl).flatMap(types -> {
+            // The space types themselves are not shared - they are only the starting point of the closure
+            Set<String> nestedTypes = types.stream().map(StructureOfType::getName).filter(Objects::nonNull).collect(Collectors.toSet());
+            return preloadTypeClosureLevel(client, types, nestedTypes, new HashSet<>());
+        }).defaultIfEmpty(0);
+    }
+
+    private Mono<Integer> preloadTypeClosureLevel(WebClient client, List<StructureOfType> frontier, Set<String> requestedNestedTypes, Set<String> requestedReferencedTypes) {
+        Set<String> nestedTypes = new HashSet<>();
+        Set<String> referencedTypes = new HashSet<>();
+        frontier.forEach(type -> {
+            if (type.getFields() != null) {
+                type.getFields().values().forEach(f -> {
+                    if (!CollectionUtils.isEmpty(f.getTargetTypesNames())) {
+                        (Helpers.isNestedField(f) ? nestedTypes : referencedTypes).addAll(f.getTargetTypesNames());
+                    }
+                });
             }
-            if (CollectionUtils.isNotEmpty(typesToExclude)) {
-                typesToExclude.sort((o1, o2) -> o1.getLabel().compareToIgnoreCase(o2.getLabel()));
-                List<String> list = typesToExclude.stream().map(StructureOfType::getName).toList();
-                all.removeIf(t -> list.contains(t.getName()));
+            if (type.getIncomingLinks() != null) {
+                type.getIncomingLinks().values().forEach(i -> i.getSourceTypes().forEach(source -> referencedTypes.add(source.getType().getName())));
             }
-            return all;
+        });
+        nestedTypes.removeAll(requestedNestedTypes);
+        referencedTypes.removeAll(requestedNestedTypes);
+        referencedTypes.removeAll(nestedTypes);
+        referencedTypes.removeAll(requestedReferencedTypes);
+        requestedNestedTypes.addAll(nestedTypes);
+        requestedReferencedTypes.addAll(referencedTypes);
+        if (nestedTypes.isEmpty() && referencedTypes.isEmpty()) {
+            return Mono.just(0);
         }
-        return Collections.emptyList();
+        Map<String, KGCoreResult<StructureOfType>> emptyResult = Collections.emptyMap();
+        return Mono.zip(
+                nestedTypes.isEmpty() ? Mono.just(emptyResult) : fetchTypesByName(client, new ArrayList<>(nestedTypes), true).defaultIfEmpty(emptyResult),
+                referencedTypes.isEmpty() ? Mono.just(emptyResult) : fetchTypesByName(client, new ArrayList<>(referencedTypes), false).defaultIfEmpty(emptyResult)
+        ).flatMap(result -> {
+            // The levels are loaded one after the other since the next one is only known from the nested types of this one
+            List<StructureOfType> nextLevel = result.getT1().values().stream().map(KGCoreResult::getData).filter(Objects::nonNull).toList();
+            long loaded = nextLevel.size() + result.getT2().values().stream().map(KGCoreResult::getData).filter(Objects::nonNull).count();
+            return preloadTypeClosureLevel(client, nextLevel, requestedNestedTypes, requestedReferencedTypes).map(deeper -> deeper + (int) loaded);
+        });
+    }
+
+    public List<StructureOfType> getSpaceAvailableTypes(String space) {
+        // Both requests are prepared in the current thread (since the web client needs access to the original request) and are executed concurrently
+        Mono<List<StructureOfType>> allTypes = getAllAssignableTypes();
+        Mono<List<StructureOfType>> spaceTypes = getSpaceTypesMono(space, false, false).defaultIfEmpty(Collections.emptyList());
+        Tuple2<List<StructureOfType>, List<StructureOfType>> result = Mono.zip(allTypes, spaceTypes).block();
+        if (result == null || CollectionUtils.isEmpty(result.getT1())) {
+            return Collections.emptyList();
+        }
+        Set<String> typesToExclude = result.getT2().stream().map(StructureOfType::getName).collect(Collectors.toSet());
+        return result.getT1().stream().filter(t -> !typesToExclude.contains(t.getName())).toList();
     }
 
 
@@ -139,13 +230,75 @@ public class SpaceClient {
     }
 
     public Map<String, KGCoreResult<StructureOfType>> getTypesByName(List<String> types, boolean withProperties) {
+        return resolveTypesByName(types, withProperties).block();
+    }
+
+    /**
+     * Resolves the types by their name. The (space independent) type structures are shared across users: cached
+     * types are served from the cache (stale ones are refreshed in the background with a single request - unless they
+     * are refreshed already), the remaining ones are fetched in a single request. Types which are known not to exist are
+     * skipped. Since the callers enrich the returned structures, each of them receives its own copy.
+     */
+    public Mono<Map<String, KGCoreResult<StructureOfType>>> resolveTypesByName(Collection<String> types, boolean withProperties) {
+        Map<String, KGCoreResult<StructureOfType>> result = new HashMap<>();
+        List<String> typesToRetrieve = new ArrayList<>();
+        Map<SimpleKey, String> staleTypes = new LinkedHashMap<>();
+        types.stream().distinct().forEach(t -> {
+            TimestampedValue cached = staleWhileRevalidate.lookup(typeStructureCache, new SimpleKey(t, withProperties));
+            if (cached != null) {
+                result.put(t, new KGCoreResult<StructureOfType>().setData(SerializationUtils.clone((StructureOfType) cached.getValue())));
+                if (staleWhileRevalidate.isStale(typeStructureCache, cached)) {
+                    staleTypes.put(new SimpleKey(t, withProperties), t);
+                }
+            } else if (!missingEntries.isMissingType(t)) {
+                typesToRetrieve.add(t);
+            }
+        });
+        if (!staleTypes.isEmpty()) {
+            // Types which are already refreshed by a concurrent request are left out
+            staleWhileRevalidate.revalidate(typeStructureCache, staleTypes.keySet(), keys -> fetchTypesByName(keys.stream().map(staleTypes::get).toList(), withProperties));
+        }
+        if (typesToRetrieve.isEmpty()) {
+            return Mono.just(result);
+        }
+        return fetchTypesByName(typesToRetrieve, withProperties).map(fetched -> {
+            result.putAll(fetched);
+            return result;
+        }).defaultIfEmpty(result);
+    }
+
+    private Mono<Map<String, KGCoreResult<StructureOfType>>> fetchTypesByName(List<String> types, boolean withProperties) {
+        return fetchTypesByName(kg.client(true), types, withProperties);
+    }
+
+    private Mono<Map<String, KGCoreResult<StructureOfType>>> fetchTypesByName(WebClient client, List<String> types, boolean withProperties) {
         String relativeUrl = String.format("typesByName?stage=IN_PROGRESS&withProperties=%s", withProperties);
-        StructureOfTypeByNameFromKG response = kg.client(true).post().uri(kg.url(relativeUrl))
+        return client.post().uri(kg.url(relativeUrl))
                 .body(BodyInserters.fromValue(types))
                 .retrieve()
                 .bodyToMono(StructureOfTypeByNameFromKG.class)
-                .block();
-        return response != null ? response.getData() : null;
+                .mapNotNull(KGCoreResult::getData)
+                .doOnNext(fetched -> types.forEach(name -> {
+                    KGCoreResult<StructureOfType> type = fetched.get(name);
+                    if (type != null && type.getData() != null) {
+                        staleWhileRevalidate.put(typeStructureCache, new SimpleKey(name, withProperties), SerializationUtils.clone(type.getData()));
+                    } else {
+                        missingEntries.markMissingType(name);
+                    }
+                }));
+    }
+
+    /**
+     * Prepares the request for the given types - the type names are only resolved once the request is executed which
+     * allows to send it as soon as the types are known.
+     */
+    public Mono<Map<String, KGCoreResult<StructureOfType>>> getTypesByName(Mono<List<String>> types, boolean withProperties, boolean withIncomingLinks, String space) {
+        String relativeUrl = String.format("typesByName?stage=IN_PROGRESS&withProperties=%s&withIncomingLinks=%s&space=%s", withProperties, withIncomingLinks, space);
+        return kg.client(true).post().uri(kg.url(relativeUrl))
+                .body(BodyInserters.fromPublisher(types, new ParameterizedTypeReference<List<String>>() {}))
+                .retrieve()
+                .bodyToMono(StructureOfTypeByNameFromKG.class)
+                .mapNotNull(KGCoreResult::getData);
     }
 
     public Map<String, KGCoreResult<StructureOfType>> getTypesByName(List<String> types, boolean withProperties, boolean withIncomingLinks, String space) {
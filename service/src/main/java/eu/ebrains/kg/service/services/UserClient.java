@@ -25,31 +25,45 @@ package eu.ebrains.kg.service.services;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.ebrains.kg.service.caching.StaleWhileRevalidate;
+import eu.ebrains.kg.service.caching.TimestampedValue;
 import eu.ebrains.kg.service.models.KGCoreResult;
 import eu.ebrains.kg.service.models.commons.UserSummary;
 import eu.ebrains.kg.service.models.user.UserProfile;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.*;
 
 @Component
 public class UserClient {
 
+    private static final String USER_SUMMARY_CACHE = "userSummary";
+
     private final ServiceCall kg;
     private final String searchEndpoint;
     private final String detailEndpoint;
+    private final int resolveConcurrency;
+    private final Cache userSummaryCache;
+    private final StaleWhileRevalidate staleWhileRevalidate;
 
-    public UserClient(ServiceCall kg, @Value("${kg.users.searchEndpoint}") String searchEndpoint, @Value("${kg.users.detailEndpoint}") String detailEndpoint) {
+    public UserClient(ServiceCall kg, CacheManager cacheManager, StaleWhileRevalidate staleWhileRevalidate, @Value("${kg.users.searchEndpoint}") String searchEndpoint, @Value("${kg.users.detailEndpoint}") String detailEndpoint, @Value("${kg.users.resolveConcurrency:8}") int resolveConcurrency) {
         this.kg = kg;
         this.searchEndpoint = searchEndpoint;
         this.detailEndpoint = detailEndpoint;
-
+        this.resolveConcurrency = resolveConcurrency;
+        this.userSummaryCache = cacheManager.getCache(USER_SUMMARY_CACHE);
+        this.staleWhileRevalidate = staleWhileRevalidate;
     }
 
     private static class UserFromKG extends KGCoreResult<UserProfile> {
@@ -85,7 +99,7 @@ public class UserClient {
     public List<UserSummary> getUsers(String search) {
         final List<UserRepresentation> result = this.kg.client(false).get().uri(String.format(this.searchEndpoint, URLEncoder.encode(search, StandardCharsets.UTF_8))).retrieve().bodyToMono(new ParameterizedTypeReference<List<UserRepresentation>>() {
         }).block();
-        return result == null ? null : result.stream().map(this::fromUserRepresentation).toList();
+        return result == null ? null : result.stream().map(u -> cacheUserSummary(u.id, fromUserRepresentation(u))).toList();
 
     }
 
@@ -94,8 +108,48 @@ public class UserClient {
     }
 
     public UserSummary getUserById(String userId) {
-        final UserRepresentation user = this.kg.client(false).get().uri(String.format(this.detailEndpoint, URLEncoder.encode(userId, StandardCharsets.UTF_8))).retrieve().bodyToMono(UserRepresentation.class).block();
-        return user!=null ? fromUserRepresentation(user) : null;
+        return staleWhileRevalidate.get(userSummaryCache, userId, () -> fetchUserById(userId).map(this::fromUserRepresentation)).block();
+    }
+
+    /**
+     * Resolves the given user ids to their summaries (in the order of the ids). Users already known by the cache are
+     * served from there (and refreshed in the background if stale), the remaining ones are fetched in parallel from the
+     * identity service. Ids which can not be resolved are skipped.
+     */
+    public List<UserSummary> getUsersByIds(List<String> userIds) {
+        Map<String, UserSummary> resolved = new HashMap<>();
+        List<Mono<Map.Entry<String, UserSummary>>> lookups = new ArrayList<>();
+        userIds.stream().distinct().forEach(userId -> {
+            TimestampedValue cached = staleWhileRevalidate.lookup(userSummaryCache, userId);
+            if (cached != null) {
+                resolved.put(userId, (UserSummary) cached.getValue());
+                if (staleWhileRevalidate.isStale(userSummaryCache, cached)) {
+                    staleWhileRevalidate.revalidate(userSummaryCache, userId, () -> fetchUserById(userId).doOnNext(u -> cacheUserSummary(userId, fromUserRepresentation(u))));
+                }
+            } else {
+                // The requests are prepared in the current thread since the web client needs access to the original request
+                lookups.add(fetchUserById(userId).map(u -> Map.entry(userId, fromUserRepresentation(u))));
+            }
+        });
+        if (!lookups.isEmpty()) {
+            List<Map.Entry<String, UserSummary>> fetched = Flux.merge(Flux.fromIterable(lookups), resolveConcurrency).collectList().block();
+            if (fetched != null) {
+                fetched.forEach(e -> resolved.put(e.getKey(), cacheUserSummary(e.getKey(), e.getValue())));
+            }
+        }
+        return userIds.stream().map(resolved::get).filter(Objects::nonNull).toList();
+    }
+
+    private Mono<UserRepresentation> fetchUserById(String userId) {
+        return this.kg.client(false).get().uri(String.format(this.detailEndpoint, URLEncoder.encode(userId, StandardCharsets.UTF_8)))
+                .retrieve()
+                .bodyToMono(UserRepresentation.class)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
+    }
+
+    private UserSummary cacheUserSummary(String userId, UserSummary userSummary) {
+        staleWhileRevalidate.put(userSummaryCache, userId, userSummary);
+        return userSummary;
     }
 
 }
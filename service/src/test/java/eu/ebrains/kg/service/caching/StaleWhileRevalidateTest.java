@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.caching;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaleWhileRevalidateTest {
+
+    private final Cache cache = new ConcurrentMapCache("region");
+
+    private StaleWhileRevalidate staleWhileRevalidate(String staleAfter) {
+        MockEnvironment environment = new MockEnvironment().withProperty("kg.cache.staleAfter.region", staleAfter);
+        environment.setConversionService(new ApplicationConversionService());
+        return new StaleWhileRevalidate(environment);
+    }
+
+    @Test
+    void getServesStaleValueAndRefreshesIt() {
+        //given
+        StaleWhileRevalidate staleWhileRevalidate = staleWhileRevalidate("1ms");
+        cache.put("key", new TimestampedValue("old", 0L));
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        String result = staleWhileRevalidate.get(cache, "key", () -> Mono.fromSupplier(() -> "new" + loads.incrementAndGet())).block();
+
+        //then
+        assertEquals("old", result);
+        assertEquals(1, loads.get());
+        assertEquals("new1", staleWhileRevalidate.lookup(cache, "key").getValue());
+    }
+
+    @Test
+    void getServesFreshValueWithoutRefresh() {
+        //given
+        StaleWhileRevalidate staleWhileRevalidate = staleWhileRevalidate("1h");
+        staleWhileRevalidate.put(cache, "key", "cached");
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        String result = staleWhileRevalidate.get(cache, "key", () -> Mono.fromSupplier(() -> "new" + loads.incrementAndGet())).block();
+
+        //then
+        assertEquals("cached", result);
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void getLoadsMissingValue() {
+        //given
+        StaleWhileRevalidate staleWhileRevalidate = staleWhileRevalidate("1h");
+
+        //when
+        String result = staleWhileRevalidate.get(cache, "key", () -> Mono.just("loaded")).block();
+
+        //then
+        assertEquals("loaded", result);
+        assertEquals("loaded", staleWhileRevalidate.lookup(cache, "key").getValue());
+    }
+}
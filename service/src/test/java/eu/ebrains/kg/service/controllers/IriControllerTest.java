@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IriControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final IriController controller = new IriController();
+
+    @Test
+    void compactUsesOnePrefixPerNamespace() {
+        //given
+        Map<String, Object> instance = Map.of(
+                "types", List.of(Map.of("name", "https://openminds.ebrains.eu/core/Dataset", "label", "Dataset")),
+                "fields", Map.of("https://openminds.ebrains.eu/vocab/fullName", Map.of("fullyQualifiedName", "https://openminds.ebrains.eu/vocab/fullName", "value", "https://example.org/not/an/iri")));
+
+        //when
+        JsonNode result = controller.compact(objectMapper.valueToTree(instance));
+
+        //then
+        JsonNode context = result.get(IriController.CONTEXT);
+        assertEquals(2, context.size());
+        String vocab = context.get("ns0").asText().endsWith("/vocab/") ? "ns0" : "ns1";
+        String core = vocab.equals("ns0") ? "ns1" : "ns0";
+        JsonNode field = result.get("fields").get(vocab + ":fullName");
+        assertEquals(vocab + ":fullName", field.get("fullyQualifiedName").asText());
+        assertEquals("https://example.org/not/an/iri", field.get("value").asText());
+        assertEquals(core + ":Dataset", result.get("types").get(0).get("name").asText());
+    }
+
+    @Test
+    void expandRestoresCompactedPayload() {
+        //given
+        Map<String, Object> original = Map.of(
+                "@type", List.of("https://openminds.ebrains.eu/core/Dataset"),
+                "https://openminds.ebrains.eu/vocab/fullName", "foo",
+                "https://openminds.ebrains.eu/vocab/custodian", List.of(Map.of("@id", "https://kg.ebrains.eu/api/instances/a")));
+        Map<String, Object> compacted = objectMapper.convertValue(controller.compact(objectMapper.valueToTree(original)), new TypeReference<>() {});
+
+        //when
+        Map<String, Object> result = controller.expand(compacted);
+
+        //then
+        assertEquals(original, result);
+    }
+
+    @Test
+    void topLevelArraysAreNotCompacted() {
+        //given
+        List<Map<String, Object>> types = List.of(Map.of("name", "https://openminds.ebrains.eu/core/Dataset"));
+
+        //when
+        JsonNode result = controller.compact(objectMapper.valueToTree(types));
+
+        //then
+        assertEquals(objectMapper.valueToTree(types), result);
+        assertFalse(IriController.isCompactable(types));
+    }
+}
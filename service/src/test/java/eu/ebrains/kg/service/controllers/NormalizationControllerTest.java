@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.service.constants.EditorConstants;
+import eu.ebrains.kg.service.constants.SchemaFieldsConstants;
+import eu.ebrains.kg.service.models.instance.InstanceSummary;
+import eu.ebrains.kg.service.models.instance.NormalizedInstances;
+import eu.ebrains.kg.service.models.type.StructureOfField;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NormalizationControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final NormalizationController controller = new NormalizationController(objectMapper);
+
+    private InstanceSummary instance(String id, String fieldLabel, Object value) {
+        InstanceSummary instance = new InstanceSummary(id, List.of("Dataset"), "myspace", List.of());
+        instance.getTypes().get(0).setLabel("Dataset");
+        StructureOfField field = objectMapper.convertValue(Map.of(SchemaFieldsConstants.IDENTIFIER, "name", SchemaFieldsConstants.NAME, fieldLabel, EditorConstants.VOCAB_REGEX, "^.*$"), StructureOfField.class);
+        field.setValue(value);
+        instance.setFields(Map.of("name", field));
+        return instance;
+    }
+
+    @Test
+    void normalizeSharesIdenticalDefinitions() {
+        //given
+        Map<String, InstanceSummary> instances = new LinkedHashMap<>();
+        instances.put("1", instance("1", "Name", "foo"));
+        instances.put("2", instance("2", "Name", "bar"));
+
+        //when
+        NormalizedInstances result = controller.normalize(instances);
+
+        //then
+        assertEquals(List.of("Dataset"), List.copyOf(result.getTypes().keySet()));
+        assertEquals(List.of("name"), List.copyOf(result.getFields().keySet()));
+        JsonNode field = result.getInstances().get("2").get("fields").get("name");
+        assertEquals("bar", field.get("value").asText());
+        assertEquals("name", field.get(NormalizationController.DEFINITION).asText());
+        assertEquals("Dataset", result.getInstances().get("2").get("types").get(0).asText());
+        assertFalse(result.getFields().get("name").has("value"));
+    }
+
+    @Test
+    void normalizeKeepsDifferentDefinitionsOfTheSameField() {
+        //given
+        Map<String, InstanceSummary> instances = new LinkedHashMap<>();
+        instances.put("1", instance("1", "Name", "foo"));
+        instances.put("2", instance("2", "Full name", "bar"));
+
+        //when
+        NormalizedInstances result = controller.normalize(instances);
+
+        //then
+        assertEquals(List.of("name", "name#2"), List.copyOf(result.getFields().keySet()));
+        assertEquals("name#2", result.getInstances().get("2").get("fields").get("name").get(NormalizationController.DEFINITION).asText());
+    }
+}
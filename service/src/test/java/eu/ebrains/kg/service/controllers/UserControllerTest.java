@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.controllers;
+
+import eu.ebrains.kg.service.models.commons.UserSummary;
+import eu.ebrains.kg.service.services.UserClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserControllerTest {
+
+    private final UserClient userClient = mock(UserClient.class);
+
+    private final UserController controller = new UserController(userClient, new ConcurrentMapCacheManager(), 3);
+
+    private final UserSummary jane = new UserSummary("1", "jdoe", "Jane Doe");
+    private final UserSummary john = new UserSummary("2", "jsmith", "John Smith");
+
+    private final UserSummary jim = new UserSummary("3", "jim", "Jim Beam");
+
+    @Test
+    void searchUsersFiltersCompletePrefixResultLocally() {
+        //given
+        when(userClient.getUsers("j")).thenReturn(List.of(jane, john, jim));
+        when(userClient.getUsers("js")).thenReturn(List.of(john));
+
+        //when
+        controller.searchUsers("j");
+        controller.searchUsers("js");
+        List<UserSummary> result = controller.searchUsers("JS Smi");
+
+        //then
+        assertEquals(List.of(john), result);
+        verify(userClient, times(2)).getUsers(anyString());
+    }
+
+    @Test
+    void searchUsersAsksAgainAsLongAsTheResultLimitHasNotBeenReached() {
+        //given
+        when(userClient.getUsers("j")).thenReturn(List.of(jane, john));
+        when(userClient.getUsers("jo")).thenReturn(List.of(john));
+
+        //when
+        controller.searchUsers("j");
+        List<UserSummary> result = controller.searchUsers("jo");
+
+        //then
+        assertEquals(List.of(john), result);
+        verify(userClient).getUsers("jo");
+    }
+
+    @Test
+    void searchUsersAsksAgainIfTheMatchingDiverges() {
+        //given
+        UserSummary byEmail = new UserSummary("4", "max", "Max Muster");
+        when(userClient.getUsers("m")).thenReturn(List.of(byEmail, jane, john));
+        when(userClient.getUsers("x")).thenReturn(List.of(byEmail));
+        when(userClient.getUsers("xa")).thenReturn(List.of(byEmail));
+
+        //when
+        controller.searchUsers("m");
+        controller.searchUsers("x");
+        List<UserSummary> result = controller.searchUsers("xa");
+
+        //then
+        assertEquals(List.of(byEmail), result);
+        verify(userClient).getUsers("xa");
+    }
+
+    @Test
+    void searchUsersAsksAgainIfPrefixResultIsTruncated() {
+        //given
+        when(userClient.getUsers("j")).thenReturn(List.of(jane, john, jim));
+        when(userClient.getUsers("jo")).thenReturn(List.of(john));
+
+        //when
+        controller.searchUsers("j");
+        List<UserSummary> result = controller.searchUsers("jo");
+
+        //then
+        assertEquals(List.of(john), result);
+        verify(userClient).getUsers("jo");
+    }
+
+    @Test
+    void searchUsersServesRepeatedSearchFromCache() {
+        //given
+        when(userClient.getUsers("jane")).thenReturn(List.of(jane));
+
+        //when
+        controller.searchUsers("jane");
+        List<UserSummary> result = controller.searchUsers(" Jane ");
+
+        //then
+        assertEquals(List.of(jane), result);
+        verify(userClient, times(1)).getUsers(anyString());
+    }
+}
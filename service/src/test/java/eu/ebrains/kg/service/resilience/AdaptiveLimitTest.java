@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTest {
+
+    @Test
+    void limitShrinksOnDropsAndGrowsOnFastCalls() {
+        //given
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 100, Duration.ofSeconds(1), 0.5, 10, 1.0);
+
+        //when
+        limit.acquire(Duration.ZERO, false).block().release(AdaptiveLimit.Outcome.DROPPED);
+
+        //then
+        assertEquals(5, limit.getLimit());
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            List<AdaptiveLimit.Permit> permits = new ArrayList<>();
+            for (int j = 0; j < limit.getLimit(); j++) {
+                permits.add(limit.acquire(Duration.ZERO, false).block());
+            }
+            permits.forEach(p -> p.release(AdaptiveLimit.Outcome.SUCCESS));
+        }
+
+        //then
+        assertTrue(limit.getLimit() > 5);
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void queuedCallsAreResumedOrRejectedAfterTheirDeadline() {
+        //given
+        AdaptiveLimit limit = new AdaptiveLimit(1, 1, 1, Duration.ofSeconds(1), 0.5, 10, 1.0);
+        AdaptiveLimit.Permit permit = limit.acquire(Duration.ZERO, false).block();
+
+        //when
+        AdaptiveLimit.Permit[] resumed = new AdaptiveLimit.Permit[1];
+        limit.acquire(Duration.ofSeconds(5), false).subscribe(p -> resumed[0] = p);
+        assertEquals(1, limit.getQueued());
+        permit.release(AdaptiveLimit.Outcome.SUCCESS);
+
+        //then
+        assertNotNull(resumed[0]);
+        assertEquals(0, limit.getQueued());
+        assertThrows(LimitExceededException.class, () -> limit.acquire(Duration.ofMillis(20), false).block());
+        assertEquals(0, limit.getQueued());
+    }
+
+    @Test
+    void backgroundCallsOnlyUseTheirShareAndYieldToInteractiveOnes() {
+        //given
+        AdaptiveLimit limit = new AdaptiveLimit(4, 4, 4, Duration.ofSeconds(1), 0.5, 10, 0.5);
+        AdaptiveLimit.Permit first = limit.acquire(Duration.ZERO, true).block();
+        AdaptiveLimit.Permit second = limit.acquire(Duration.ZERO, true).block();
+        AdaptiveLimit.Permit interactive = limit.acquire(Duration.ZERO, false).block();
+        AdaptiveLimit.Permit otherInteractive = limit.acquire(Duration.ZERO, false).block();
+
+        //when
+        List<String> resumed = new ArrayList<>();
+        limit.acquire(Duration.ofSeconds(5), true).subscribe(p -> resumed.add("background"));
+        limit.acquire(Duration.ofSeconds(5), false).subscribe(p -> resumed.add("interactive"));
+        interactive.release(AdaptiveLimit.Outcome.SUCCESS);
+
+        //then
+        assertEquals(List.of("interactive"), resumed);
+        assertNotNull(second);
+        assertNotNull(otherInteractive);
+
+        //when
+        first.release(AdaptiveLimit.Outcome.SUCCESS);
+
+        //then
+        assertEquals(List.of("interactive", "background"), resumed);
+    }
+}
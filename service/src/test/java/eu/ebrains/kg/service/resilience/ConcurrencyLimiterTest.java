@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class ConcurrencyLimiterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(meterRegistry, new EndpointClasses("http://kg", "v3"), true, 20, 2, 200, Duration.ofSeconds(5), 0.9, 10, Duration.ofSeconds(1), 0.5);
+
+    @Test
+    void callIsInFlightUntilItsBodyIsReceived() {
+        //given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://kg/v3/instances/foo")).attribute(RequestLane.ATTRIBUTE, RequestLane.INTERACTIVE).build();
+
+        //when
+        ClientResponse response = limiter.filter(request, r -> Mono.just(ClientResponse.create(HttpStatus.OK).body("{}").build())).block();
+        double inFlightBeforeBody = inFlight();
+        assertNotNull(response);
+        response.bodyToMono(String.class).block();
+        double inFlightAfterBody = inFlight();
+
+        //then
+        assertEquals(1, inFlightBeforeBody);
+        assertEquals(0, inFlightAfterBody);
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("kg.upstream.concurrency.inflight").tag("endpoint", "instances").gauge().value();
+    }
+}
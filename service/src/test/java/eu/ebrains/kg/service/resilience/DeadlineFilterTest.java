@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineFilterTest {
+
+    private final DeadlineFilter filter = new DeadlineFilter(Duration.ofSeconds(20), Duration.ofSeconds(60));
+
+    @Test
+    void remainingBudgetIsForwardedAndHungCallsAreCancelled() {
+        //given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://kg/v3/instances/foo")).attribute(Deadline.ATTRIBUTE, Deadline.in(Duration.ofMillis(100))).build();
+        AtomicReference<String> forwardedBudget = new AtomicReference<>();
+        AtomicReference<Boolean> cancelled = new AtomicReference<>(false);
+
+        //when
+        Mono<ClientResponse> response = filter.filter(request, r -> {
+            forwardedBudget.set(r.headers().getFirst(Deadline.HEADER));
+            return Mono.<ClientResponse>never().doOnCancel(() -> cancelled.set(true));
+        });
+
+        //then
+        assertThrows(DeadlineExceededException.class, response::block);
+        assertTrue(Long.parseLong(forwardedBudget.get()) <= 100);
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void callsOfExpiredRequestsAreNotSent() {
+        //given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://kg/v3/instances/foo")).attribute(Deadline.ATTRIBUTE, Deadline.in(Duration.ZERO)).build();
+
+        //when
+        Mono<ClientResponse> response = filter.filter(request, r -> fail("The call should not be sent"));
+
+        //then
+        assertThrows(DeadlineExceededException.class, response::block);
+    }
+
+    @Test
+    void slowlyStreamedBodiesAreCutOffAtTheDeadline() {
+        //given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://kg/v3/instances/foo")).attribute(Deadline.ATTRIBUTE, Deadline.in(Duration.ofMillis(200))).build();
+        Flux<DataBuffer> trickle = Flux.interval(Duration.ofMillis(20)).map(i -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[]{'a'}));
+
+        //when
+        ClientResponse response = filter.filter(request, r -> Mono.just(ClientResponse.create(HttpStatus.OK).body(trickle).build())).block();
+
+        //then
+        assertNotNull(response);
+        assertThrows(DeadlineExceededException.class, () -> response.bodyToMono(String.class).block());
+    }
+}
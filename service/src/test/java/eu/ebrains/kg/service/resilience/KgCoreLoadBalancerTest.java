@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This open source software code was developed in part or in whole in the
+ * Human Brain Project, funded from the European Union's Horizon 2020
+ * Framework Programme for Research and Innovation under
+ * Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ * (Human Brain Project SGA1, SGA2 and SGA3).
+ *
+ */
+
+package eu.ebrains.kg.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KgCoreLoadBalancerTest {
+
+    @Test
+    void nodeWithLeastOutstandingRequestsIsSelected() {
+        //given
+        KgCoreNode busy = new KgCoreNode("http://a", 3, 1000, 10000);
+        KgCoreNode idle = new KgCoreNode("http://b", 3, 1000, 10000);
+        busy.start();
+
+        //when
+        KgCoreNode selected = KgCoreLoadBalancer.select(List.of(busy, idle));
+
+        //then
+        assertSame(idle, selected);
+    }
+
+    @Test
+    void failingNodeIsEjectedUntilAllNodesAre() {
+        //given
+        KgCoreNode failing = new KgCoreNode("http://a", 2, 60000, 600000);
+        KgCoreNode healthy = new KgCoreNode("http://b", 2, 30000, 600000);
+        for (int i = 0; i < 2; i++) {
+            failing.start();
+            failing.failed();
+            failing.finished();
+        }
+
+        //when
+        boolean ejected = failing.isEjected();
+        KgCoreNode selected = KgCoreLoadBalancer.select(List.of(failing, healthy));
+        for (int i = 0; i < 2; i++) {
+            healthy.start();
+            healthy.failed();
+            healthy.finished();
+        }
+        KgCoreNode selectedIfAllAreEjected = KgCoreLoadBalancer.select(List.of(failing, healthy));
+
+        //then
+        assertTrue(ejected);
+        assertSame(healthy, selected);
+        assertSame(healthy, selectedIfAllAreEjected);
+    }
+}
@@ -35,10 +35,25 @@
  */
 import type API from './API';
 import type { UUID, Stage, Settings, UserProfile, KGCoreResult, StructureOfType, InstanceFull, InstanceSummary, SuggestionStructure, Neighbor, Scope, UserSummary, IncomingLink, InstanceRawStructure, InstanceSummaryData, InstanceLabelData, InstanceFullData } from '../types';
-import type { AxiosInstance } from 'axios';
+import type { AxiosError, AxiosInstance, InternalAxiosRequestConfig } from 'axios';
 
 const RELATIVE_ROOT_PATH = '/api';
 
+// The service rejects background requests (e.g. the bulk requests) with a 503 and a "Retry-After" while it is busy
+const MAX_RETRIES_WHEN_UNAVAILABLE = 3;
+const DEFAULT_RETRY_AFTER_IN_SECONDS = 1;
+const MAX_RETRY_AFTER_IN_SECONDS = 10;
+
+type RetryableRequestConfig = InternalAxiosRequestConfig & { _unavailableRetries?: number };
+
+const getRetryDelay = (retryAfter: unknown) => {
+  // Only the delay in seconds is supported - a date falls back to the default
+  const seconds = typeof retryAfter === 'string' || typeof retryAfter === 'number' ? Number(retryAfter) : NaN;
+  const delay = isNaN(seconds) || seconds < 0 ? DEFAULT_RETRY_AFTER_IN_SECONDS : Math.min(seconds, MAX_RETRY_AFTER_IN_SECONDS);
+  // A bit of jitter prevents the rejected requests from coming back all at once
+  return delay * 1000 * (1 + Math.random() / 2);
+};
+
 declare global {
 	interface Window {
 		rootPath?: string
@@ -101,6 +116,15 @@ class APIBackendAdapter implements API {
 
   constructor(axios: AxiosInstance) {
     this._axios = axios;
+    this._axios.interceptors.response.use(undefined, async (error: AxiosError) => {
+      const config = error.config as RetryableRequestConfig | undefined;
+      if (error.response?.status !== 503 || !config || (config._unavailableRetries ?? 0) >= MAX_RETRIES_WHEN_UNAVAILABLE) {
+        return Promise.reject(error);
+      }
+      config._unavailableRetries = (config._unavailableRetries ?? 0) + 1;
+      await new Promise(resolve => setTimeout(resolve, getRetryDelay(error.response?.headers['retry-after'])));
+      return this._axios.request(config);
+    });
   }
 
   async getSettings(): Promise<Settings> {